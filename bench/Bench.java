@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal microbenchmark harness: warmup and measurement iterations of a fixed
+ * duration, average time per operation, results saved as JSON.
+ *
+ * Operations return a value that is folded into a volatile sink so the JIT
+ * cannot remove the work. Results can be compared with compare().
+ */
+public class Bench {
+    public interface Op {
+        long run() throws Exception;
+    }
+
+    private static final class Case {
+        final String name;
+        final Op op;
+
+        Case(String name, Op op) {
+            this.name = name;
+            this.op = op;
+        }
+    }
+
+    private static final class Result {
+        final String name;
+        final double[] samples;
+        final double mean;
+        final double error;
+
+        Result(String name, double[] samples) {
+            this.name = name;
+            this.samples = samples;
+            double sum = 0;
+            for (double s : samples) {
+                sum += s;
+            }
+            mean = sum / samples.length;
+            double squares = 0;
+            for (double s : samples) {
+                squares += (s - mean) * (s - mean);
+            }
+            error = samples.length > 1 ? Math.sqrt(squares / (samples.length - 1)) : 0;
+        }
+    }
+
+    static volatile long sink;
+
+    private final List<Case> cases = new ArrayList<>();
+    private int warmupIterations = 5;
+    private int measurementIterations = 10;
+    private long iterationNanos = 500_000_000L;
+
+    public Bench iterations(int warmup, int measurement, long iterationMillis) {
+        warmupIterations = warmup;
+        measurementIterations = measurement;
+        iterationNanos = iterationMillis * 1_000_000L;
+        return this;
+    }
+
+    public Bench add(String name, Op op) {
+        cases.add(new Case(name, op));
+        return this;
+    }
+
+    /** Runs every case whose name matches the filter and writes the results to out. */
+    public void run(String filter, Path out) throws Exception {
+        Pattern pattern = Pattern.compile(filter);
+        List<Result> results = new ArrayList<>();
+        for (Case c : cases) {
+            if (!pattern.matcher(c.name).find()) {
+                continue;
+            }
+            int batch = calibrate(c.op);
+            for (int i = 0; i < warmupIterations; i++) {
+                iteration(c.op, batch);
+            }
+            double[] samples = new double[measurementIterations];
+            for (int i = 0; i < measurementIterations; i++) {
+                samples[i] = iteration(c.op, batch);
+            }
+            Result r = new Result(c.name, samples);
+            results.add(r);
+            System.out.printf("%-40s %14.1f +- %10.1f ns/op%n", r.name, r.mean, r.error);
+        }
+        write(results, out);
+        System.out.println("Results written to " + out);
+    }
+
+    // Picks a batch size that takes about a millisecond, to keep timer overhead out
+    private int calibrate(Op op) throws Exception {
+        int batch = 1;
+        while (batch < (1 << 24)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < batch; i++) {
+                sink += op.run();
+            }
+            if (System.nanoTime() - start > 1_000_000L) {
+                break;
+            }
+            batch *= 2;
+        }
+        return batch;
+    }
+
+    private double iteration(Op op, int batch) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < batch; i++) {
+                sink += op.run();
+            }
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return (double) elapsed / ops;
+    }
+
+    private void write(List<Result> results, Path out) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"jvm\": \"").append(System.getProperty("java.vm.name")).append(' ')
+                .append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"jvmArgs\": \"").append(String.join(" ",
+                ManagementFactory.getRuntimeMXBean().getInputArguments()).replace("\\", "\\\\").replace("\"", "\\\""))
+                .append("\",\n");
+        json.append("  \"date\": \"").append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()))
+                .append("\",\n");
+        json.append("  \"results\": [\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            json.append("    {\"benchmark\": \"").append(r.name).append("\", \"mode\": \"avgt\", \"unit\": \"ns/op\", ");
+            json.append(String.format(java.util.Locale.ROOT, "\"score\": %.3f, \"error\": %.3f, \"samples\": [",
+                    r.mean, r.error));
+            for (int j = 0; j < r.samples.length; j++) {
+                json.append(j == 0 ? "" : ", ").append(String.format(java.util.Locale.ROOT, "%.3f", r.samples[j]));
+            }
+            json.append("]}").append(i == results.size() - 1 ? "\n" : ",\n");
+        }
+        json.append("  ]\n}\n");
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        Files.write(out, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Default results file: bench/results/bench-yyyyMMdd-HHmmss.json */
+    public static Path defaultResultFile() {
+        return Paths.get("bench", "results",
+                "bench-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+    }
+
+    /**
+     * Prints the score change of every benchmark present in both files and returns
+     * the number that got slower by more than the threshold (in percent).
+     */
+    public static int compare(Path baseline, Path current, double thresholdPercent) throws IOException {
+        Map<String, Double> before = readScores(baseline);
+        Map<String, Double> after = readScores(current);
+        int regressions = 0;
+        for (Map.Entry<String, Double> e : after.entrySet()) {
+            Double old = before.get(e.getKey());
+            if (old == null) {
+                System.out.printf("%-40s %14.1f ns/op (new)%n", e.getKey(), e.getValue());
+                continue;
+            }
+            double change = (e.getValue() - old) / old * 100.0;
+            boolean regressed = change > thresholdPercent;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-40s %14.1f -> %14.1f ns/op %+7.1f%%%s%n",
+                    e.getKey(), old, e.getValue(), change, regressed ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+
+    private static Map<String, Double> readScores(Path file) throws IOException {
+        String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Matcher m = Pattern.compile("\"benchmark\": \"([^\"]+)\".*?\"score\": ([0-9.eE+-]+)").matcher(json);
+        Map<String, Double> scores = new LinkedHashMap<>();
+        while (m.find()) {
+            scores.put(m.group(1), Double.parseDouble(m.group(2)));
+        }
+        return scores;
+    }
+}
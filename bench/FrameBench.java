@@ -0,0 +1,160 @@
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.swing.RepaintManager;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Headless frame-time harness for the animated GuessingGameForm.
+ *
+ * Builds the form offscreen at several window sizes, drives the animation tick
+ * for a number of frames and paints each frame's dirty region into a
+ * BufferedImage. Reports per-frame time percentiles, the share of the window
+ * repainted, allocation rate and GC pauses.
+ *
+ * Usage: FrameBench [frames] [warmupFrames] [--full]
+ *
+ * --full repaints the whole window every frame, as a plain repaint() would.
+ */
+public class FrameBench {
+    private static final int[][] SIZES = {
+        {500, 700},     // window minimum
+        {600, 800},     // preferred size
+        {1280, 1024},
+        {1920, 1080},
+        {2560, 1440},
+        {3840, 2160},   // 4K
+    };
+
+    private static final LatencyHistogram gcPauses = new LatencyHistogram();
+    private static final Rectangle clip = new Rectangle();
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        boolean full = args.length > 2 && args[2].equals("--full");
+
+        listenForGcPauses();
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        System.out.printf("%-10s %9s %9s %9s %9s %9s %8s %12s %8s %10s%n",
+                "size", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms", "dirty %", "alloc KB/f", "gc", "gc max ms");
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            GuessingGameForm form = new GuessingGameForm();
+            form.stopAnimation();
+            form.addDeferredPanels();
+            RepaintManager.currentManager(form).setDoubleBufferingEnabled(false);
+            form.setSize(width, height);
+            layoutTree(form);
+
+            BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = frame.createGraphics();
+            for (int i = 0; i < warmup; i++) {
+                renderFrame(form, g2d, full);
+            }
+
+            LatencyHistogram frameTimes = new LatencyHistogram();
+            long gcCountBefore = gcCount();
+            synchronized (gcPauses) {
+                gcPauses.reset();
+            }
+            long dirtyArea = 0;
+            long allocBefore = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < frames; i++) {
+                long start = System.nanoTime();
+                dirtyArea += renderFrame(form, g2d, full);
+                frameTimes.record(System.nanoTime() - start);
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocBefore;
+            long gcs = gcCount() - gcCountBefore;
+            long gcMax;
+            synchronized (gcPauses) {
+                gcMax = gcPauses.getMax();
+            }
+            g2d.dispose();
+
+            System.out.printf("%-10s %9.2f %9.2f %9.2f %9.2f %9.2f %8.1f %12.1f %8d %10.2f%n",
+                    width + "x" + height,
+                    frameTimes.getMean() / 1e6,
+                    frameTimes.percentile(50) / 1e6,
+                    frameTimes.percentile(90) / 1e6,
+                    frameTimes.percentile(99) / 1e6,
+                    frameTimes.getMax() / 1e6,
+                    100.0 * dirtyArea / ((double) width * height * frames),
+                    allocated / 1024.0 / frames,
+                    gcs,
+                    gcMax / 1e6);
+        }
+        System.exit(0);
+    }
+
+    // Same work as one animationTimer tick; returns the number of pixels repainted.
+    // Offscreen the form is not showing, so paint the dirty rectangles here.
+    private static long renderFrame(GuessingGameForm form, Graphics2D g2d, boolean full) {
+        form.tick();
+        if (full) {
+            g2d.setClip(null);
+            form.paint(g2d);
+            return (long) form.getWidth() * form.getHeight();
+        }
+        DirtyRegion region = form.getDirtyRegion();
+        for (int i = 0; i < region.getCount(); i++) {
+            region.getRect(i, clip);
+            g2d.setClip(clip);
+            form.paint(g2d);
+        }
+        return region.getArea();
+    }
+
+    // There is no peer to validate against offscreen, so lay out the tree by hand
+    private static void layoutTree(Component c) {
+        if (c instanceof Container) {
+            Container container = (Container) c;
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layoutTree(child);
+            }
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static void listenForGcPauses() {
+        NotificationListener listener = (Notification notification, Object handback) -> {
+            if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                synchronized (gcPauses) {
+                    gcPauses.record(info.getGcInfo().getDuration() * 1_000_000L);
+                }
+            }
+        };
+        List<GarbageCollectorMXBean> gcs = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean gc : gcs) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+            }
+        }
+    }
+}
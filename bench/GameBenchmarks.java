@@ -0,0 +1,125 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Benchmarks for the game logic and rendering hot paths.
+ *
+ * Usage:
+ *   GameBenchmarks [filter-regex] [--out results.json] [--quick]
+ *   GameBenchmarks --compare baseline.json current.json [threshold-percent]
+ *
+ * Runs headless; the form is painted into an offscreen BufferedImage.
+ */
+public class GameBenchmarks {
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 800;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("--compare")) {
+            double threshold = args.length > 3 ? Double.parseDouble(args[3]) : 10.0;
+            int regressions = Bench.compare(Paths.get(args[1]), Paths.get(args[2]), threshold);
+            System.exit(regressions == 0 ? 0 : 1);
+        }
+
+        String filter = ".*";
+        Path out = Bench.defaultResultFile();
+        boolean quick = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out")) {
+                out = Paths.get(args[++i]);
+            } else if (args[i].equals("--quick")) {
+                quick = true;
+            } else {
+                filter = args[i];
+            }
+        }
+
+        System.setProperty("java.awt.headless", "true");
+        Bench bench = new Bench();
+        if (quick) {
+            bench.iterations(1, 3, 200);
+        }
+        addGameBenchmarks(bench);
+        addRenderBenchmarks(bench);
+        bench.run(filter, out);
+        System.exit(0);
+    }
+
+    private static void addGameBenchmarks(Bench bench) {
+        final GuessingGameForm form = new GuessingGameForm();
+        form.stopAnimation();
+        form.addDeferredPanels();
+        final GuessingGameApp app = new GuessingGameApp(form);
+        final String[] guesses = {"50", "25", "75", "12", "37", "62", "87"};
+        final int[] next = new int[1];
+
+        bench.add("guess.valid", () -> {
+            form.getGuessField().setText(guesses[next[0]++ % guesses.length]);
+            app.processGuess();
+            if (form.getResultLabel().getText().startsWith("Game Over")
+                    || form.getResultLabel().getText().startsWith("Congratulations")) {
+                app.startNewGame();
+            }
+            return next[0];
+        });
+        bench.add("guess.invalid", () -> {
+            form.getGuessField().setText("abc");
+            app.processGuess();
+            return form.getResultLabel().getText().length();
+        });
+        bench.add("hint", () -> {
+            app.provideHint();
+            return next[0]++;
+        });
+
+        final GameEngine engine = new GameEngine(1024);
+        for (int i = 0; i < engine.getCapacity(); i++) {
+            engine.newGame(engine.allocate(), 1, 100);
+        }
+        bench.add("engine.guess", () -> {
+            int session = next[0]++ & 1023;
+            int outcome = engine.guess(session, 50, GameEngine.MAX_ATTEMPTS_MEDIUM);
+            if (engine.isGameOver(session)) {
+                engine.newGame(session, 1, 100);
+            }
+            return outcome;
+        });
+        bench.add("engine.hint", () -> engine.hint(next[0]++ & 1023));
+        GameStatistics statistics = new GameStatistics();
+        bench.add("stats.record", () -> {
+            statistics.record(next[0] % 3, next[0]++ % 10 + 1, true);
+            return next[0];
+        });
+        bench.add("form.updateStats", () -> {
+            statistics.record(1, next[0]++ % 10 + 1, true);
+            form.showStatistics(statistics.snapshot());
+            return next[0];
+        });
+    }
+
+    private static void addRenderBenchmarks(Bench bench) {
+        final GuessingGameForm form = new GuessingGameForm();
+        form.stopAnimation();
+        form.addDeferredPanels();
+        form.setSize(WIDTH, HEIGHT);
+        // Place the bubbles and floating numbers, or the paint benchmarks draw none
+        form.tick();
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = image.createGraphics();
+
+        bench.add("paint.paintComponent", () -> {
+            form.paintComponent(g2d);
+            return image.getRGB(0, 0);
+        });
+        bench.add("paint.drawDecorativeElements", () -> {
+            form.drawDecorativeElements(g2d);
+            return image.getRGB(0, 0);
+        });
+        bench.add("paint.particles", () -> {
+            form.drawBubbles(g2d);
+            return image.getRGB(0, 0);
+        });
+    }
+}
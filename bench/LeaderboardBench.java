@@ -0,0 +1,218 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills a Leaderboard with millions of players from many threads at once, then
+ * times rank and top-K queries, checks them against a brute-force ranking, and
+ * times a snapshot to disk and loading it back.
+ *
+ * Every player submits several games, so most submissions race against the
+ * player's own earlier best and many are not improvements.
+ *
+ * Usage: LeaderboardBench [players] [threads] [games per player]
+ * Defaults to 2,000,000 players, twice the number of cores and 3 games. A
+ * second run races every thread on the same few players and checks that no
+ * replaced score is left in the top list.
+ * Exits with status 1 if any check failed.
+ */
+public class LeaderboardBench {
+    private static final int DIFFICULTY = GameEngine.MEDIUM;
+    private static final int QUERIES = 1_000_000;
+    private static final int CHECKED = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 2 * Runtime.getRuntime().availableProcessors();
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        final Leaderboard board = new Leaderboard();
+        final String[] names = new String[players];
+        for (int i = 0; i < players; i++) {
+            names[i] = "player" + i;
+        }
+        final AtomicLong improved = new AtomicLong();
+        long seed = RandomSource.masterSeed();
+        System.out.printf("%,d players, %d threads, %d games each%n", players, threads, games);
+
+        // Each thread plays every player in its share, in interleaved passes so players race across threads
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            final RandomSource rand = new RandomSource(RandomSource.seedFor(seed, t));
+            workers.add(new Thread(() -> {
+                long mine = 0;
+                for (int g = 0; g < games; g++) {
+                    for (int p = (first + g) % threads; p < players; p += threads) {
+                        if (board.submit(names[p], DIFFICULTY, attempts(rand), 1000 + rand.nextInt(59_000), p)) {
+                            mine++;
+                        }
+                    }
+                }
+                improved.addAndGet(mine);
+            }, "submitter-" + t));
+        }
+        long begin = System.nanoTime();
+        for (Thread w : workers) {
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        long nanos = System.nanoTime() - begin;
+        long submissions = (long) players * games;
+        System.out.printf("Submit: %,d in %.2f s (%,.0f/s), %,d personal bests%n",
+                submissions, nanos / 1e9, submissions / (nanos / 1e9), improved.get());
+
+        RandomSource rand = new RandomSource(RandomSource.seedFor(seed, -1));
+        long sink = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            begin = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                sink += board.rank(names[rand.nextInt(players)], DIFFICULTY);
+            }
+            nanos = System.nanoTime() - begin;
+        }
+        System.out.printf("Rank: %.0f ns per query%n", (double) nanos / QUERIES);
+        begin = System.nanoTime();
+        for (int i = 0; i < QUERIES / 100; i++) {
+            sink += board.top(DIFFICULTY, 10).size();
+        }
+        nanos = System.nanoTime() - begin;
+        System.out.printf("Top 10: %.0f ns per query%n", (double) nanos / (QUERIES / 100));
+
+        long errors = check(board, names, rand);
+        errors += race(threads, seed);
+
+        File file = File.createTempFile("leaderboard", ".dat");
+        try {
+            Leaderboard saved = new Leaderboard(file);
+            saved.awaitLoaded();
+            for (int p = 0; p < players; p++) {
+                Leaderboard.Score s = board.getBest(names[p], DIFFICULTY);
+                saved.submit(s.getPlayer(), DIFFICULTY, s.getAttempts(), s.getDurationMillis(), s.getFinishedAt());
+            }
+            begin = System.nanoTime();
+            saved.close();
+            nanos = System.nanoTime() - begin;
+            System.out.printf("Snapshot: %.2f s, %,d bytes%n", nanos / 1e9, file.length());
+
+            begin = System.nanoTime();
+            Leaderboard loaded = new Leaderboard(file);
+            loaded.awaitLoaded();
+            nanos = System.nanoTime() - begin;
+            System.out.printf("Load: %.2f s%n", nanos / 1e9);
+            if (loaded.getPlayers(DIFFICULTY) != players
+                    || loaded.rank(names[0], DIFFICULTY) != board.rank(names[0], DIFFICULTY)) {
+                System.out.println("Loaded leaderboard differs");
+                errors++;
+            }
+            loaded.close();
+        } finally {
+            file.delete();
+        }
+
+        System.out.println(sink == 42 ? "" : errors == 0 ? "All checks passed" : "FAILED: " + errors + " errors");
+        System.exit(errors == 0 ? 0 : 1);
+    }
+
+    // Mostly near binary search, with a tail of unlucky games
+    private static int attempts(RandomSource rand) {
+        int attempts = 4 + rand.nextInt(4);
+        while (attempts < 15 && rand.nextInt(4) == 0) {
+            attempts++;
+        }
+        return attempts;
+    }
+
+    // Ranks and the top 100 against a full sort of every player's best
+    private static long check(Leaderboard board, String[] names, RandomSource rand) {
+        long errors = 0;
+        if (board.getPlayers(DIFFICULTY) != names.length) {
+            System.out.println("Players: " + board.getPlayers(DIFFICULTY) + ", expected " + names.length);
+            errors++;
+        }
+        // Rank keys in the leaderboard's resolution: attempts, then centiseconds
+        long[] keys = new long[names.length];
+        Leaderboard.Score[] scores = new Leaderboard.Score[names.length];
+        for (int p = 0; p < names.length; p++) {
+            scores[p] = board.getBest(names[p], DIFFICULTY);
+            keys[p] = key(scores[p]);
+        }
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < CHECKED; i++) {
+            int p = rand.nextInt(names.length);
+            // 1 + the number of keys strictly below this one
+            int lo = 0;
+            int hi = sorted.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sorted[mid] < keys[p]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (board.rank(names[p], DIFFICULTY) != lo + 1) {
+                errors++;
+            }
+        }
+        Arrays.sort(scores);
+        List<Leaderboard.Score> top = board.top(DIFFICULTY, 100);
+        for (int i = 0; i < Math.min(100, scores.length); i++) {
+            if (i >= top.size() || top.get(i) != scores[i]) {
+                errors++;
+            }
+        }
+        System.out.printf("Checked %d ranks and the top %d against a full sort%n", CHECKED, top.size());
+        return errors;
+    }
+
+    // Every thread improves the same few players at once; no superseded score may stay behind
+    private static long race(int threads, long seed) throws InterruptedException {
+        final int hot = 8;
+        final int rounds = 20_000;
+        final Leaderboard board = new Leaderboard();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final RandomSource rand = new RandomSource(RandomSource.seedFor(seed, 1000 + t));
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    // Times shrink as the rounds go on, so most submits are new bests
+                    int duration = (rounds - i) * 5 + rand.nextInt(5);
+                    board.submit("hot" + rand.nextInt(hot), DIFFICULTY, 5, duration, i);
+                }
+            }, "racer-" + t));
+        }
+        for (Thread w : workers) {
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        long errors = 0;
+        List<Leaderboard.Score> top = board.top(DIFFICULTY, Leaderboard.TOP_CAPACITY);
+        if (top.size() != hot) {
+            errors++;
+        }
+        long ranked = 0;
+        for (Leaderboard.Score s : top) {
+            if (board.getBest(s.getPlayer(), DIFFICULTY) != s) {
+                errors++;
+            }
+            ranked = Math.max(ranked, board.rank(s.getPlayer(), DIFFICULTY));
+        }
+        if (ranked > hot) {
+            errors++;
+        }
+        System.out.printf("Race: %d threads improving %d players, top has %d entries%n", threads, hot, top.size());
+        return errors;
+    }
+
+    private static long key(Leaderboard.Score s) {
+        return (long) s.getAttempts() << 32 | Math.min(s.getDurationMillis() / 10, Leaderboard.MAX_RANKED_MILLIS / 10);
+    }
+}
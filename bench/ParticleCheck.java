@@ -0,0 +1,98 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that the steady-state particle animation allocates nothing, and reports
+ * the cost per frame as the particle count grows. Then does the same for a whole
+ * animation frame of an offscreen GuessingGameForm: tick() plus painting its
+ * dirty region, as the animation timer does on screen.
+ *
+ * Usage: ParticleCheck [frames]
+ * Exits with status 1 if any frame allocated.
+ */
+public class ParticleCheck {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int[] COUNTS = {20, 200, 1000, 2000};
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+
+        // Warm up until every sprite has been rendered and the JIT has settled
+        ParticleField warmup = new ParticleField(200, new Color(0x64FFDA), 1);
+        long warmupEnd = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < warmupEnd) {
+            warmup.update(WIDTH, HEIGHT, 1);
+            warmup.draw(g2d, 0, 0, WIDTH, HEIGHT);
+        }
+
+        boolean allocated = false;
+        for (int count : COUNTS) {
+            ParticleField field = new ParticleField(count, new Color(0x64FFDA), 42);
+            for (int i = 0; i < 100; i++) {
+                field.update(WIDTH, HEIGHT, 1);
+                field.draw(g2d, 0, 0, WIDTH, HEIGHT);
+            }
+
+            long before = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                field.update(WIDTH, HEIGHT, 1);
+                field.draw(g2d, 0, 0, WIDTH, HEIGHT);
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytes = threads.getThreadAllocatedBytes(threadId) - before;
+            allocated |= bytes > 0;
+            System.out.printf("%5d particles: %8.3f ms/frame, %d bytes allocated over %d frames%n",
+                    count, elapsed / 1e6 / frames, bytes, frames);
+        }
+        g2d.dispose();
+
+        GuessingGameForm form = new GuessingGameForm();
+        form.stopAnimation();
+        form.addDeferredPanels();
+        form.setSize(WIDTH, HEIGHT);
+        layoutTree(form);
+        Graphics2D formGraphics = image.createGraphics();
+        long warmupFormEnd = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < warmupFormEnd) {
+            form.tick();
+            form.paintDirtyRegion(formGraphics);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            form.tick();
+            form.paintDirtyRegion(formGraphics);
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - before;
+        allocated |= bytes > 0;
+        System.out.printf("form frame:     %8.3f ms/frame, %d bytes allocated over %d frames%n",
+                elapsed / 1e6 / frames, bytes, frames);
+        formGraphics.dispose();
+        System.exit(allocated ? 1 : 0);
+    }
+
+    // There is no peer to validate against offscreen, so lay out the tree by hand
+    private static void layoutTree(Component c) {
+        if (c instanceof Container) {
+            Container container = (Container) c;
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layoutTree(child);
+            }
+        }
+    }
+}
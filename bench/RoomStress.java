@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Races many threads against one GameRoom at a time and checks the rules hold.
+ *
+ * Every round, all players guess random numbers in the room's current range as
+ * fast as they can on a wide range, so nearly every guess contends on the same
+ * bounds. Checks that exactly one guess per round is CORRECT and that it is the
+ * reported winner, that the range never widens and always holds the secret, and
+ * that every observer sees versions in order, never sees the range widen, and
+ * ends on the winning state exactly once.
+ *
+ * Usage: RoomStress [threads] [rounds] [observers]
+ * Defaults to twice the number of cores, 200 rounds and 5000 observers.
+ * Exits with status 1 if any check failed.
+ */
+public class RoomStress {
+    private static final long MIN = 1;
+    private static final long MAX = 1_000_000_000_000L;
+
+    /** Checks what one observer sees; only the notifier thread calls update. */
+    private static final class CheckingObserver implements GameRoom.Observer {
+        long version = -1;
+        long min = Long.MIN_VALUE;
+        long max = Long.MAX_VALUE;
+        long updates;
+        int wins;
+        long errors;
+
+        void reset() {
+            version = -1;
+            min = Long.MIN_VALUE;
+            max = Long.MAX_VALUE;
+            wins = 0;
+        }
+
+        @Override
+        public void update(GameRoom.State state) {
+            updates++;
+            if (state.getVersion() < version || state.getMin() < min || state.getMax() > max) {
+                errors++;
+            }
+            if (state.isOver()) {
+                wins++;
+                if (wins > 1 || state.getSecret() < state.getMin() || state.getSecret() > state.getMax()) {
+                    errors++;
+                }
+            }
+            version = state.getVersion();
+            min = state.getMin();
+            max = state.getMax();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 2 * Runtime.getRuntime().availableProcessors();
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int observerCount = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+
+        List<CheckingObserver> observers = new ArrayList<>();
+        for (int i = 0; i < observerCount; i++) {
+            observers.add(new CheckingObserver());
+        }
+        ExecutorService notifier = Executors.newSingleThreadExecutor();
+        final GameRoom[] room = new GameRoom[1];
+        final CyclicBarrier start = new CyclicBarrier(threads + 1);
+        final CyclicBarrier end = new CyclicBarrier(threads + 1);
+        final AtomicLong correct = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong guesses = new AtomicLong();
+
+        List<Thread> players = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final RandomSource rand = new RandomSource(RandomSource.seedFor(RandomSource.masterSeed(), t));
+            Thread player = new Thread(() -> {
+                try {
+                    for (int r = 0; r < rounds; r++) {
+                        start.await();
+                        GameRoom current = room[0];
+                        int id = current.join();
+                        long mine = 0;
+                        int outcome;
+                        do {
+                            long min = current.getMin();
+                            long max = current.getMax();
+                            outcome = current.guess(id, min + rand.nextLong(max - min + 1));
+                            mine++;
+                            if (current.getMin() > current.getMax()) {
+                                errors.incrementAndGet();
+                            }
+                        } while (outcome != GameEngine.CORRECT && outcome != GameEngine.ALREADY_OVER);
+                        if (outcome == GameEngine.CORRECT) {
+                            correct.incrementAndGet();
+                            if (current.getWinner() != id) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                        guesses.addAndGet(mine);
+                        end.await();
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                    e.printStackTrace();
+                }
+            }, "player-" + t);
+            player.start();
+            players.add(player);
+        }
+
+        System.out.printf("%d players, %d rounds, %d observers, range %d-%d%n", threads, rounds, observerCount, MIN, MAX);
+        long roundErrors = 0;
+        long nanos = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (CheckingObserver o : observers) {
+                o.reset();
+            }
+            room[0] = new GameRoom(MIN, MAX, RandomSource.seedFor(RandomSource.masterSeed(), -r - 1), threads, notifier);
+            room[0].addObservers(observers);
+            correct.set(0);
+            long begin = System.nanoTime();
+            start.await();
+            end.await();
+            nanos += System.nanoTime() - begin;
+
+            // Let the last notification through before checking what the observers saw
+            notifier.submit(() -> { }).get();
+            if (correct.get() != 1) {
+                roundErrors++;
+            }
+            for (CheckingObserver o : observers) {
+                if (o.wins != 1) {
+                    roundErrors++;
+                }
+            }
+        }
+        notifier.shutdown();
+        notifier.awaitTermination(10, TimeUnit.SECONDS);
+        for (Thread player : players) {
+            player.join();
+        }
+
+        long updates = 0;
+        long observerErrors = 0;
+        for (CheckingObserver o : observers) {
+            updates += o.updates;
+            observerErrors += o.errors;
+        }
+        long total = errors.get() + roundErrors + observerErrors;
+        System.out.printf("%d guesses in %.2f s (%.0f guesses/s, %.1f per round)%n",
+                guesses.get(), nanos / 1e9, guesses.get() / (nanos / 1e9), (double) guesses.get() / rounds);
+        System.out.printf("%d observer updates (%.1f per observer per round)%n",
+                updates, (double) updates / Math.max(1, observerCount) / rounds);
+        System.out.println(total == 0 ? "All checks passed" : "FAILED: " + errors.get() + " player, "
+                + roundErrors + " round and " + observerErrors + " observer errors");
+        System.exit(total == 0 ? 0 : 1);
+    }
+}
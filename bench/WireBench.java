@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Throughput of the binary protocol against the text one.
+ *
+ * Codec: encodes and decodes a guess exchange (GUESS, then RESULT and RANGE, the
+ * server's answer to a guess that narrowed the range) in memory, in WireCodec
+ * frames and in the text protocol's lines, and reports messages and bytes per
+ * second.
+ *
+ * Server: plays against an in-process GameServer over loopback in each protocol,
+ * sending a new game and a burst of guesses at a time, and reports requests per
+ * second and bytes per request.
+ *
+ * Usage: WireBench [seconds per run]
+ * Defaults to 3 seconds.
+ */
+public class WireBench {
+    private static final int BURST = 32;
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3;
+        long runNanos = (long) (seconds * 1e9);
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+        codec("binary", buf, runNanos, true);
+        codec("text", buf, runNanos, false);
+        codec("binary", buf, runNanos, true);
+        codec("text", buf, runNanos, false);
+
+        server(true, runNanos);
+        server(false, runNanos);
+    }
+
+    private static void codec(String name, ByteBuffer buf, long runNanos, boolean binary) {
+        WireCodec.Decoder decoder = new WireCodec.Decoder();
+        GuessParser parser = new GuessParser();
+        long messages = 0;
+        long bytes = 0;
+        long sink = 0;
+        long begin = System.nanoTime();
+        long end = begin + runNanos;
+        long now;
+        do {
+            // Encode until full, then decode it all
+            buf.clear();
+            long guess = messages;
+            if (binary) {
+                while (WireCodec.putGuess(buf, guess) && WireCodec.putResult(buf, GameEngine.TOO_LOW, 3, 0)
+                        && WireCodec.putRange(buf, guess + 1, guess + 1_000_000, 3, 20)) {
+                    guess++;
+                }
+            } else {
+                while (buf.remaining() >= 64) {
+                    GameServer.putAscii(buf, "GUESS ");
+                    GameServer.putLong(buf, guess);
+                    GameServer.putAscii(buf, "\nLOW 3 ");
+                    GameServer.putLong(buf, guess + 1);
+                    GameServer.putAscii(buf, " ");
+                    GameServer.putLong(buf, guess + 1_000_000);
+                    GameServer.putAscii(buf, "\n");
+                    guess++;
+                }
+            }
+            buf.flip();
+            bytes += buf.remaining();
+            if (binary) {
+                int type;
+                while ((type = decoder.next(buf)) > 0) {
+                    sink += type == WireCodec.GUESS ? decoder.getGuess()
+                            : type == WireCodec.RANGE ? decoder.getMin() : decoder.getOutcome();
+                    messages++;
+                }
+            } else {
+                int start = 0;
+                for (int i = 0; i < buf.limit(); i++) {
+                    if (buf.get(i) == '\n') {
+                        sink += decodeLine(buf, start, i, parser);
+                        messages++;
+                        start = i + 1;
+                    }
+                }
+            }
+            now = System.nanoTime();
+        } while (now < end);
+        double elapsed = (now - begin) / 1e9;
+        System.out.printf("Codec %-6s %,12.0f messages/s %8.1f MB/s  (%d)%n",
+                name, messages / elapsed, bytes / elapsed / 1e6, sink & 1);
+    }
+
+    // The text protocol's work for one line: the command word, then every number on it
+    private static long decodeLine(ByteBuffer buf, int start, int end, GuessParser parser) {
+        long sum = 0;
+        int space = GameServer.nextSpace(buf, start, end);
+        if (GameServer.matches(buf, start, space, "GUESS") || GameServer.matches(buf, start, space, "LOW")) {
+            while (space < end) {
+                int next = GameServer.nextSpace(buf, space + 1, end);
+                if (parser.parse(buf, space + 1, next)) {
+                    sum += parser.value();
+                }
+                space = next;
+            }
+        }
+        return sum;
+    }
+
+    private static void server(boolean binary, long runNanos) throws IOException, InterruptedException {
+        GameServer server = new GameServer(0, 16, binary);
+        Thread thread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "server");
+        thread.start();
+        RandomSource rand = RandomSource.named("wirebench");
+        WireCodec.Decoder decoder = new WireCodec.Decoder();
+        ByteBuffer out = ByteBuffer.allocateDirect(4096);
+        ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+        long requests = 0;
+        long bytes = 0;
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            channel.socket().setTcpNoDelay(true);
+            long begin = System.nanoTime();
+            long end = begin + runNanos;
+            long now;
+            do {
+                // A new game and a burst of guesses; wait for every answer before the next burst
+                out.clear();
+                if (binary) {
+                    WireCodec.putNewGame(out, GameEngine.EASY, 1, 1_000_000_000);
+                } else {
+                    GameServer.putAscii(out, "NEW EASY 1 1000000000\n");
+                }
+                for (int i = 0; i < BURST; i++) {
+                    long guess = 1 + rand.nextLong(1_000_000_000);
+                    if (binary) {
+                        WireCodec.putGuess(out, guess);
+                    } else {
+                        GameServer.putAscii(out, "GUESS ");
+                        GameServer.putLong(out, guess);
+                        GameServer.putAscii(out, "\n");
+                    }
+                }
+                out.flip();
+                bytes += out.remaining();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                int answers = 0;
+                in.clear();
+                while (answers < BURST + 1) {
+                    if (channel.read(in) < 0) {
+                        throw new IOException("server closed the connection");
+                    }
+                    in.flip();
+                    if (binary) {
+                        int type;
+                        while ((type = decoder.next(in)) > 0) {
+                            // A RANGE that follows a RESULT belongs to the same answer
+                            if (type != WireCodec.RANGE || answers == 0) {
+                                answers++;
+                            }
+                        }
+                    } else {
+                        int start = in.position();
+                        for (int i = start; i < in.limit(); i++) {
+                            if (in.get(i) == '\n') {
+                                answers++;
+                                start = i + 1;
+                            }
+                        }
+                        in.position(start);
+                    }
+                    in.compact();
+                }
+                requests += BURST + 1;
+                now = System.nanoTime();
+            } while (now < end);
+            double elapsed = (now - begin) / 1e9;
+            System.out.printf("Server %-6s %,12.0f requests/s %8.1f bytes/request%n",
+                    binary ? "binary" : "text", requests / elapsed, (double) bytes / requests);
+        } finally {
+            server.stop();
+            thread.join();
+        }
+    }
+}
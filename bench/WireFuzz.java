@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Fuzzes WireCodec and the binary GameServer.
+ *
+ * - Round trip: random frames, some with out-of-range values, are encoded into
+ *   one stream and decoded back from pieces of random size, as they would
+ *   arrive from a socket. Every field must come back, every out-of-range frame
+ *   must decode as INVALID, and nothing after it may be lost.
+ * - Garbage: random bytes must decode to frames, NEED_MORE or MALFORMED without
+ *   an exception.
+ * - Short buffers: a put into a buffer too small for the frame must write nothing.
+ * - Server: a binary GameServer is sent random frames and random bytes and must
+ *   answer with well-formed frames, and keep serving new connections.
+ * - Pipelined bursts: thousands of guesses sent without waiting, whose answers
+ *   are over three times their size, must each get their answer.
+ *
+ * Usage: WireFuzz [frames]
+ * Defaults to 1,000,000 frames. Exits with status 1 if any check failed.
+ */
+public class WireFuzz {
+    private static final long BURST_TIMEOUT_MS = 30_000;
+    private static long errors;
+
+    public static void main(String[] args) throws Exception {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long seed = RandomSource.masterSeed();
+        System.out.println("Seed " + seed + " (-Dguessinggame.seed), " + frames + " frames");
+        RandomSource rand = new RandomSource(seed);
+
+        roundTrip(rand, frames);
+        garbage(rand, frames);
+        shortBuffers(rand);
+        server(rand, frames / 100);
+        bursts(rand, 20, 5000);
+
+        System.out.println(errors == 0 ? "All checks passed" : "FAILED: " + errors + " errors");
+        System.exit(errors == 0 ? 0 : 1);
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok && errors++ < 10) {
+            System.out.println("Mismatch: " + what);
+        }
+    }
+
+    // A random frame's type and fields; fields a to d are used as each type needs
+    private static final class Frame {
+        int type;
+        long a;
+        long b;
+        long c;
+        long d;
+        boolean valid;
+
+        void random(RandomSource rand) {
+            type = 1 + rand.nextInt(WireCodec.ERROR);
+            a = rand.nextLong();
+            b = rand.nextLong();
+            c = rand.nextInt(256);
+            d = rand.nextInt(256);
+            valid = true;
+            switch (type) {
+                case WireCodec.NEW_GAME:
+                    c = rand.nextInt(8) == 0 ? 3 + rand.nextInt(253) : rand.nextInt(3);
+                    valid = c <= GameEngine.HARD && a <= b;
+                    break;
+                case WireCodec.HINT:
+                case WireCodec.RESULT:
+                    valid = c <= (type == WireCodec.HINT ? GameEngine.HINT_DIGIT_SUM_3 : GameEngine.LOST);
+                    break;
+                case WireCodec.RANGE:
+                    valid = a <= b;
+                    break;
+            }
+        }
+
+        boolean put(ByteBuffer buf) {
+            switch (type) {
+                case WireCodec.NEW_GAME: return WireCodec.putNewGame(buf, (int) c, a, b);
+                case WireCodec.GUESS: return WireCodec.putGuess(buf, a);
+                case WireCodec.HINT: return WireCodec.putHint(buf, (int) c, (int) d);
+                case WireCodec.RESULT: return WireCodec.putResult(buf, (int) c, (int) d, a);
+                case WireCodec.RANGE: return WireCodec.putRange(buf, a, b, (int) c, (int) d);
+                case WireCodec.QUIT: return WireCodec.putQuit(buf);
+                default: return WireCodec.putError(buf, (int) c);
+            }
+        }
+
+        boolean matches(WireCodec.Decoder d) {
+            switch (type) {
+                case WireCodec.NEW_GAME: return d.getDifficulty() == c && d.getMin() == a && d.getMax() == b;
+                case WireCodec.GUESS: return d.getGuess() == a;
+                case WireCodec.HINT: return d.getHintType() == c && d.getHintValue() == this.d;
+                case WireCodec.RESULT: return d.getOutcome() == c && d.getAttempts() == this.d && d.getSecret() == a;
+                case WireCodec.RANGE:
+                    return d.getMin() == a && d.getMax() == b && d.getAttempts() == c && d.getMaxAttempts() == this.d;
+                case WireCodec.QUIT: return true;
+                default: return d.getErrorCode() == c;
+            }
+        }
+    }
+
+    private static void roundTrip(RandomSource rand, int count) {
+        Frame[] frames = new Frame[count];
+        ByteBuffer stream = ByteBuffer.allocateDirect(count * WireCodec.MAX_FRAME);
+        for (int i = 0; i < count; i++) {
+            frames[i] = new Frame();
+            frames[i].random(rand);
+            check(frames[i].put(stream), "put into a large enough buffer");
+        }
+        stream.flip();
+
+        // Feed the stream through a small receive buffer in pieces of random size
+        WireCodec.Decoder decoder = new WireCodec.Decoder();
+        ByteBuffer in = ByteBuffer.allocateDirect(64);
+        int next = 0;
+        long invalid = 0;
+        while (next < count) {
+            if (!stream.hasRemaining()) {
+                check(false, "stream ended inside frame " + next);
+                break;
+            }
+            // Frames are shorter than the buffer, so after compact() there is always room
+            int piece = Math.min(1 + rand.nextInt(in.remaining()), stream.remaining());
+            ByteBuffer slice = stream.duplicate();
+            slice.limit(stream.position() + piece);
+            in.put(slice);
+            stream.position(stream.position() + piece);
+            in.flip();
+            int type;
+            while ((type = decoder.next(in)) != WireCodec.NEED_MORE) {
+                if (type == WireCodec.MALFORMED) {
+                    check(false, "frame " + next + " decoded as MALFORMED");
+                    return;
+                }
+                Frame f = frames[next++];
+                if (type == WireCodec.INVALID) {
+                    invalid++;
+                    check(!f.valid, "valid frame " + next + " decoded as INVALID");
+                } else {
+                    check(f.valid && type == f.type && f.matches(decoder), "frame " + next + " of type " + f.type);
+                }
+            }
+            in.compact();
+        }
+        check(!stream.hasRemaining() && in.position() == 0, "bytes left after the last frame");
+        check(next == count, "decoded " + next + " of " + count + " frames");
+        System.out.printf("Round trip: %d frames, %d invalid%n", next, invalid);
+    }
+
+    private static void garbage(RandomSource rand, int count) {
+        WireCodec.Decoder decoder = new WireCodec.Decoder();
+        ByteBuffer buf = ByteBuffer.allocateDirect(256);
+        long decoded = 0;
+        long malformed = 0;
+        for (int i = 0; i < count / 10; i++) {
+            buf.clear();
+            int length = rand.nextInt(buf.capacity());
+            for (int j = 0; j < length; j++) {
+                // Mostly small bytes, so many headers are close to valid
+                buf.put((byte) (rand.nextInt(4) == 0 ? rand.nextInt(256) : rand.nextInt(20)));
+            }
+            buf.flip();
+            try {
+                int type;
+                while ((type = decoder.next(buf)) != WireCodec.NEED_MORE) {
+                    if (type == WireCodec.MALFORMED) {
+                        malformed++;
+                        break;
+                    }
+                    decoded++;
+                }
+            } catch (RuntimeException e) {
+                check(false, "decoding garbage threw " + e);
+            }
+        }
+        System.out.printf("Garbage: %d frames decoded, %d streams malformed%n", decoded, malformed);
+    }
+
+    private static void shortBuffers(RandomSource rand) {
+        Frame frame = new Frame();
+        for (int i = 0; i < 10_000; i++) {
+            frame.random(rand);
+            int size = WireCodec.frameSize(frame.type);
+            ByteBuffer buf = ByteBuffer.allocate(size - 1 - rand.nextInt(size));
+            check(!frame.put(buf) && buf.position() == 0, "put into a short buffer");
+        }
+    }
+
+    private static void server(RandomSource rand, int count) throws IOException, InterruptedException {
+        GameServer server = new GameServer(0, 64, true);
+        Thread thread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                check(false, "server failed: " + e);
+            }
+        }, "server");
+        thread.start();
+        InetSocketAddress address = new InetSocketAddress("localhost", server.getPort());
+        WireCodec.Decoder decoder = new WireCodec.Decoder();
+        ByteBuffer out = ByteBuffer.allocateDirect(WireCodec.MAX_FRAME);
+        ByteBuffer in = ByteBuffer.allocateDirect(4096);
+        Frame frame = new Frame();
+        long responses = 0;
+        int connections = 0;
+        int sent = 0;
+        while (sent < count) {
+            connections++;
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                in.clear();
+                boolean open = true;
+                // A connection lives until it sends QUIT or garbage
+                while (open && sent < count) {
+                    out.clear();
+                    if (rand.nextInt(50) == 0) {
+                        // Random bytes, usually not a frame
+                        for (int i = 0; i < 1 + rand.nextInt(out.capacity() - 1); i++) {
+                            out.put((byte) rand.nextInt(256));
+                        }
+                    } else {
+                        frame.random(rand);
+                        if (frame.type == WireCodec.NEW_GAME && frame.valid) {
+                            // Keep games winnable often enough to reach every outcome
+                            frame.a = rand.nextInt(100);
+                            frame.b = frame.a + rand.nextInt(100);
+                        } else if (frame.type == WireCodec.GUESS) {
+                            frame.a = rand.nextInt(200);
+                        }
+                        frame.put(out);
+                    }
+                    out.flip();
+                    int first = out.get(0) & 0xff;
+                    boolean quits = first == WireCodec.QUIT && out.limit() >= WireCodec.HEADER && out.get(1) == 0;
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                    sent++;
+                    if (quits) {
+                        open = false;
+                    }
+                    // Each frame gets at least one answer unless it quit or was cut short
+                    if (open && out.limit() >= WireCodec.HEADER && first >= WireCodec.NEW_GAME && first <= WireCodec.ERROR
+                            && (out.get(1) & 0xff) == WireCodec.frameSize(first) - WireCodec.HEADER
+                            && out.limit() == WireCodec.frameSize(first)) {
+                        responses += readAnswer(channel, in, decoder);
+                    } else {
+                        open = false;
+                    }
+                }
+            }
+        }
+        // The server must still take new connections
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            out.clear();
+            WireCodec.putNewGame(out, GameEngine.MEDIUM, 1, 100);
+            out.flip();
+            channel.write(out);
+            in.clear();
+            check(readAnswer(channel, in, decoder) == 1 && decoder.getType() == WireCodec.RANGE,
+                    "a new game after the fuzzing");
+        }
+        server.stop();
+        thread.join();
+        System.out.printf("Server: %d frames over %d connections, %d answers%n", sent, connections, responses);
+    }
+
+    private static void bursts(RandomSource rand, int bursts, int guesses) throws IOException, InterruptedException {
+        GameServer server = new GameServer(0, 16, true);
+        Thread thread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                check(false, "server failed: " + e);
+            }
+        }, "server");
+        thread.start();
+        InetSocketAddress address = new InetSocketAddress("localhost", server.getPort());
+        // A dropped answer leaves the reader blocked for good, so give up after a while
+        Thread timeout = new Thread(() -> {
+            try {
+                Thread.sleep(BURST_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            System.out.println("FAILED: pipelined guesses still unanswered after " + BURST_TIMEOUT_MS + " ms");
+            System.exit(1);
+        }, "burst-timeout");
+        timeout.setDaemon(true);
+        timeout.start();
+        long answered = 0;
+        long ranges = 0;
+        for (int b = 0; b < bursts; b++) {
+            // Mostly guesses outside the range, each answered by RESULT and RANGE
+            ByteBuffer out = ByteBuffer.allocate(WireCodec.MAX_FRAME * (guesses + 1));
+            WireCodec.putNewGame(out, GameEngine.EASY, 1_000, 1_000_000);
+            for (int i = 0; i < guesses; i++) {
+                boolean miss = rand.nextInt(8) != 0;
+                WireCodec.putGuess(out, miss ? rand.nextInt(1_000) : 1_000 + rand.nextInt(999_001));
+            }
+            out.flip();
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                // Write from another thread: neither side reads while blocked writing
+                Thread writer = new Thread(() -> {
+                    try {
+                        while (out.hasRemaining()) {
+                            channel.write(out);
+                        }
+                    } catch (IOException e) {
+                        check(false, "writing a burst failed: " + e);
+                    }
+                }, "burst-writer");
+                writer.start();
+                WireCodec.Decoder decoder = new WireCodec.Decoder();
+                ByteBuffer in = ByteBuffer.allocateDirect(4096);
+                in.clear();
+                check(readAnswer(channel, in, decoder) == 1 && decoder.getType() == WireCodec.RANGE, "burst new game");
+                int results = 0;
+                for (int i = 0; i < guesses; i++) {
+                    int frames = readAnswer(channel, in, decoder);
+                    results++;
+                    ranges += frames - 1;
+                }
+                writer.join();
+                check(results == guesses, "burst answered " + results + " of " + guesses + " guesses");
+                check(in.position() == 0, "frames left after the burst");
+                answered += results;
+            }
+        }
+        timeout.interrupt();
+        server.stop();
+        thread.join();
+        System.out.printf("Bursts: %d guesses pipelined over %d connections, %d answers with a range%n",
+                answered, bursts, ranges);
+    }
+
+    // Reads one complete answer: a single frame, or RESULT followed by RANGE when the range changed
+    private static int readAnswer(SocketChannel channel, ByteBuffer in, WireCodec.Decoder decoder) throws IOException {
+        int frames = 0;
+        while (true) {
+            in.flip();
+            int type = decoder.next(in);
+            if (type == WireCodec.NEED_MORE) {
+                in.compact();
+                if (channel.read(in) < 0) {
+                    check(false, "server closed the connection");
+                    return frames;
+                }
+                continue;
+            }
+            frames++;
+            check(type > 0 && type != WireCodec.NEW_GAME && type != WireCodec.GUESS && type != WireCodec.QUIT,
+                    "server answered with type " + type);
+            boolean more = type == WireCodec.RESULT && (decoder.getOutcome() == GameEngine.TOO_LOW
+                    || decoder.getOutcome() == GameEngine.TOO_HIGH || decoder.getOutcome() == GameEngine.OUT_OF_RANGE);
+            in.compact();
+            if (!more) {
+                return frames;
+            }
+        }
+    }
+}
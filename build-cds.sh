@@ -0,0 +1,35 @@
+#!/bin/sh
+# Builds out/guessinggame.jar and an AppCDS archive of the classes the game
+# loads up to its first frame, so cold starts skip most class loading:
+#
+#   ./build-cds.sh
+#   java -XX:SharedArchiveFile=out/guessinggame.jsa -jar out/guessinggame.jar
+#
+# The archive only fits the JDK that built it; rebuild after a JDK update.
+set -e
+cd "$(dirname "$0")"
+
+OUT=out
+rm -rf "$OUT/classes" "$OUT/guessinggame.jar" "$OUT/guessinggame.jsa" "$OUT/classes.lst"
+mkdir -p "$OUT/classes"
+javac -d "$OUT/classes" src/*.java
+printf 'Main-Class: GuessingGameApp\n' > "$OUT/manifest.txt"
+jar cfm "$OUT/guessinggame.jar" "$OUT/manifest.txt" -C "$OUT/classes" .
+
+# Without an X display the training run paints offscreen instead
+HEADLESS=
+if [ "$(uname)" = Linux ] && [ -z "$DISPLAY" ]; then
+    HEADLESS=-Djava.awt.headless=true
+fi
+
+# 1. Record the classes loaded on the way to the first frame and one guess
+java -Xshare:off -XX:DumpLoadedClassList="$OUT/classes.lst" $HEADLESS \
+    -Dguessinggame.log="$OUT/training-results.log" \
+    -jar "$OUT/guessinggame.jar" --train
+rm -f "$OUT/training-results.log"
+
+# 2. Dump them into the archive
+java -Xshare:dump -XX:SharedClassListFile="$OUT/classes.lst" \
+    -XX:SharedArchiveFile="$OUT/guessinggame.jsa" -jar "$OUT/guessinggame.jar"
+
+echo "Run with: java -XX:SharedArchiveFile=$OUT/guessinggame.jsa -jar $OUT/guessinggame.jar"
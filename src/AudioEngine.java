@@ -0,0 +1,184 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays the game's feedback tones without touching the audio system on the caller's thread.
+ *
+ * The tones are built once, from the same samples as the game's original clips.
+ * A daemon mixer thread owns a single long-lived SourceDataLine and mixes the
+ * active tones into it in small chunks; play() only flags the tone and wakes the
+ * mixer, so it is safe and cheap to call from the EDT.
+ * If no audio device is available the mixer runs against a null line, so the rest
+ * of the game behaves the same on headless machines.
+ *
+ * The delay from play() until the tone reaches the line's output is measured
+ * and available from getLatency().
+ */
+public class AudioEngine {
+    public static final int SUCCESS = 0;
+    public static final int ERROR = 1;
+
+    private static final float SAMPLE_RATE = 44100;
+    private static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+    private static final int FRAME_SIZE = 2;
+    // About 6 ms per chunk and 24 ms of line buffer: low latency, no underruns in practice
+    private static final int CHUNK_FRAMES = 256;
+    private static final int LINE_BUFFER_BYTES = CHUNK_FRAMES * FRAME_SIZE * 4;
+
+    private static AudioEngine shared;
+
+    private final short[][] tones = {
+        originalClip(5.0),    // Success sound (higher pitch)
+        originalClip(10.0)    // Error sound (lower pitch)
+    };
+
+    // Set by play(), cleared by the mixer when the tone starts
+    private final AtomicIntegerArray pending = new AtomicIntegerArray(tones.length);
+    private final AtomicLongArray triggeredAt = new AtomicLongArray(tones.length);
+
+    // Mixer thread state
+    private final int[] position = new int[tones.length];
+    private final long[] startedAt = new long[tones.length];
+    private final int[] mix = new int[CHUNK_FRAMES];
+    private final byte[] chunk = new byte[CHUNK_FRAMES * FRAME_SIZE];
+    private SourceDataLine line;
+    private volatile boolean nullLine;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Thread mixer;
+    private volatile boolean running = true;
+
+    public AudioEngine() {
+        java.util.Arrays.fill(position, -1);
+        mixer = new Thread(this::run, "audio-mixer");
+        mixer.setDaemon(true);
+        mixer.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    /** The engine shared by the whole application, started on first use. */
+    public static synchronized AudioEngine shared() {
+        if (shared == null) {
+            shared = new AudioEngine();
+            shared.start();
+        }
+        return shared;
+    }
+
+    public void start() {
+        mixer.start();
+    }
+
+    public void close() {
+        running = false;
+        LockSupport.unpark(mixer);
+    }
+
+    /** Starts a tone, or restarts it if it is already playing. Never blocks. */
+    public void play(int tone) {
+        if (pending.get(tone) == 0) {
+            triggeredAt.set(tone, System.nanoTime());
+            pending.set(tone, 1);
+        }
+        LockSupport.unpark(mixer);
+    }
+
+    /** Trigger-to-output latency in nanoseconds. */
+    public synchronized LatencyHistogram getLatency() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(latency);
+        return copy;
+    }
+
+    public boolean isNullLine() {
+        return nullLine;
+    }
+
+    private void run() {
+        openLine();
+        while (running) {
+            boolean active = false;
+            for (int t = 0; t < tones.length; t++) {
+                if (pending.get(t) != 0) {
+                    startedAt[t] = triggeredAt.get(t);
+                    pending.set(t, 0);
+                    position[t] = 0;
+                }
+                active |= position[t] >= 0;
+            }
+            if (!active) {
+                // Nothing to play: sleep until play() wakes us. The line simply runs dry.
+                LockSupport.park(this);
+                continue;
+            }
+            writeChunk();
+        }
+        if (line != null) {
+            line.close();
+        }
+    }
+
+    private void openLine() {
+        try {
+            SourceDataLine l = AudioSystem.getSourceDataLine(FORMAT);
+            l.open(FORMAT, LINE_BUFFER_BYTES);
+            l.start();
+            line = l;
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            // No audio device: keep running against a null line
+            nullLine = true;
+        }
+    }
+
+    private void writeChunk() {
+        java.util.Arrays.fill(mix, 0);
+        for (int t = 0; t < tones.length; t++) {
+            int pos = position[t];
+            if (pos < 0) {
+                continue;
+            }
+            short[] tone = tones[t];
+            int n = Math.min(CHUNK_FRAMES, tone.length - pos);
+            for (int i = 0; i < n; i++) {
+                mix[i] += tone[pos + i];
+            }
+            position[t] = pos + n < tone.length ? pos + n : -1;
+        }
+        for (int i = 0; i < CHUNK_FRAMES; i++) {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            chunk[2 * i] = (byte) sample;
+            chunk[2 * i + 1] = (byte) (sample >> 8);
+        }
+
+        // Audio already queued in the line plays before this chunk
+        long queuedNanos = 0;
+        if (line != null) {
+            int queuedBytes = line.getBufferSize() - line.available();
+            queuedNanos = (long) (queuedBytes / FRAME_SIZE / SAMPLE_RATE * 1e9);
+            line.write(chunk, 0, chunk.length);
+        }
+        long now = System.nanoTime();
+        for (int t = 0; t < tones.length; t++) {
+            if (startedAt[t] != 0) {
+                synchronized (this) {
+                    latency.record(now - startedAt[t] + queuedNanos);
+                }
+                startedAt[t] = 0;
+            }
+        }
+    }
+
+    // The clip the game has always played: one 8 bit sample of sin(i / period), which
+    // is silent in practice, widened to 16 bits. A louder sound is a change to the game
+    private static short[] originalClip(double period) {
+        short[] samples = new short[1];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((byte) (Math.sin(i / period) * 127) << 8);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,397 @@
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays scripted games headless, streaming from a file or stdin to a file or stdout.
+ *
+ * Every input line is one game: a seed, a difficulty and the player's inputs, a
+ * number for a guess or HINT for a hint; anything else is an invalid entry, as
+ * if typed into the guess field. Blank lines and lines starting with # are
+ * skipped. The secret is dealt from the seed as GameEngine.newGame does, in the
+ * range of -Dguessinggame.min and -Dguessinggame.max (1 to 100 by default):
+ *
+ *   42 MEDIUM 50 75 HINT 62 52
+ *
+ * Each game writes one line, in input order:
+ *
+ *   seed difficulty WON|LOST|OPEN attempts secret trace
+ *
+ * with one trace letter per input: L too low, H too high, C correct, X lost,
+ * R out of range, O game already over, I invalid. A hint is a lowercase letter,
+ * followed by its value where it has one: o over, m try the middle, c close,
+ * e even, d odd, l lower half, u upper half, q quarter, t remainder mod 3,
+ * f remainder mod 4, s digit sum (1 if a multiple of 3, else 0). A line that
+ * does not start with a seed and difficulty, or is longer than a chunk, writes
+ * ERROR. Guesses, hints and invalid entries follow the same rules as the game
+ * window.
+ *
+ * The input is read in chunks of whole lines through NIO channels and each
+ * output chunk is written as one buffer, so memory stays constant whatever the
+ * input size. With more than one thread the chunks are played in parallel and
+ * written back in input order, with a fixed number of chunks in flight.
+ */
+public class BatchRunner {
+    // Outcome of an entry that was not a number, after GameEngine's outcomes
+    private static final int INVALID_INPUT = 6;
+    private static final byte[] TRACE = {'O', 'R', 'L', 'H', 'C', 'X', 'I'};
+    private static final byte[] HINT_LETTERS = {'o', 'm', 'c', 'e', 'd', 'l', 'u', 'q', 't', 'f', 's'};
+    private static final String[] DIFFICULTIES = {"EASY", "MEDIUM", "HARD"};
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    /** A run of whole input lines and the output they produce. */
+    private static final class Chunk {
+        final ByteBuffer in = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        ByteBuffer out = ByteBuffer.allocateDirect(2 * CHUNK_SIZE);
+        // Lines before this chunk that were too long, each written as ERROR first
+        int overlong;
+    }
+
+    /** Plays chunks; one per thread. */
+    private static final class Player {
+        final GameEngine engine = new GameEngine(1, 0);
+        final int session = engine.allocate();
+        final GuessParser parser = new GuessParser();
+        // One letter per input; an input takes at least as many bytes on its line
+        final byte[] trace = new byte[CHUNK_SIZE];
+        int traceLength;
+        // Whether the current game was won
+        boolean won;
+        final long min;
+        final long max;
+        Chunk chunk;
+
+        Player(long min, long max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        void play(Chunk chunk) {
+            this.chunk = chunk;
+            chunk.out.clear();
+            for (int i = 0; i < chunk.overlong; i++) {
+                GameServer.putAscii(reserve(6), "ERROR\n");
+            }
+            ByteBuffer in = chunk.in;
+            int end = in.limit();
+            int start = 0;
+            while (start < end) {
+                int lineEnd = start;
+                while (lineEnd < end && in.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                playLine(in, start, lineEnd > start && in.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd);
+                start = lineEnd + 1;
+            }
+            chunk.out.flip();
+        }
+
+        private void playLine(ByteBuffer in, int start, int end) {
+            int seedStart = skipSpaces(in, start, end);
+            if (seedStart == end || in.get(seedStart) == '#') {
+                return;
+            }
+            int seedEnd = nextSpace(in, seedStart, end);
+            int levelStart = skipSpaces(in, seedEnd, end);
+            int levelEnd = nextSpace(in, levelStart, end);
+            int difficulty = -1;
+            for (int d = 0; d < DIFFICULTIES.length; d++) {
+                if (GameServer.matches(in, levelStart, levelEnd, DIFFICULTIES[d])) {
+                    difficulty = d;
+                }
+            }
+            if (difficulty < 0 || !parser.parse(in, seedStart, seedEnd)) {
+                GameServer.putAscii(reserve(6), "ERROR\n");
+                return;
+            }
+            long seed = parser.value();
+            int maxAttempts = GameEngine.maxAttempts(difficulty, min, max);
+            engine.newGame(session, difficulty, min, max, seed);
+            won = false;
+            traceLength = 0;
+            int tokenStart = skipSpaces(in, levelEnd, end);
+            while (tokenStart < end) {
+                int tokenEnd = nextSpace(in, tokenStart, end);
+                if (GameServer.matches(in, tokenStart, tokenEnd, "HINT")) {
+                    putHint(engine.hint(session, difficulty));
+                } else {
+                    trace[traceLength++] = TRACE[guess(in, tokenStart, tokenEnd, maxAttempts)];
+                }
+                tokenStart = skipSpaces(in, tokenEnd, end);
+            }
+
+            ByteBuffer out = reserve(64 + traceLength);
+            GameServer.putLong(out, seed);
+            out.put((byte) ' ');
+            GameServer.putAscii(out, DIFFICULTIES[difficulty]);
+            GameServer.putAscii(out, won ? " WON " : engine.isGameOver(session) ? " LOST " : " OPEN ");
+            GameServer.putLong(out, engine.getAttempts(session));
+            out.put((byte) ' ');
+            GameServer.putLong(out, engine.getSecret(session));
+            out.put((byte) ' ');
+            out.put(trace, 0, traceLength);
+            out.put((byte) '\n');
+        }
+
+        // As the game window's applyGuess, without the window
+        private int guess(ByteBuffer in, int start, int end, int maxAttempts) {
+            if (!parser.parse(in, start, end)) {
+                if (engine.isGameOver(session)) {
+                    return GameEngine.ALREADY_OVER;
+                }
+                return engine.expire(session, maxAttempts) ? GameEngine.LOST : INVALID_INPUT;
+            }
+            int outcome = engine.guess(session, parser.value(), maxAttempts);
+            if (outcome == GameEngine.CORRECT) {
+                won = true;
+            }
+            return outcome;
+        }
+
+        private void putHint(int hint) {
+            int type = HintEngine.type(hint);
+            trace[traceLength++] = HINT_LETTERS[type];
+            switch (type) {
+                case GameEngine.HINT_QUARTER:
+                case GameEngine.HINT_MOD_3:
+                case GameEngine.HINT_MOD_4:
+                    trace[traceLength++] = (byte) ('0' + HintEngine.value(hint));
+                    break;
+                case GameEngine.HINT_DIGIT_SUM_3:
+                    trace[traceLength++] = (byte) (HintEngine.value(hint) == 0 ? '1' : '0');
+                    break;
+            }
+        }
+
+        // The output buffer with at least n bytes free, grown if needed
+        private ByteBuffer reserve(int n) {
+            ByteBuffer out = chunk.out;
+            if (out.remaining() < n) {
+                ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(2 * out.capacity(), out.position() + n));
+                out.flip();
+                bigger.put(out);
+                chunk.out = bigger;
+                return bigger;
+            }
+            return out;
+        }
+    }
+
+    private final int threads;
+    private final long min;
+    private final long max;
+    private long lines;
+
+    public BatchRunner(int threads, long min, long max) {
+        if (min > max) {
+            throw new IllegalArgumentException("empty range: " + min + " to " + max);
+        }
+        this.threads = threads;
+        this.min = min;
+        this.max = max;
+    }
+
+    /** Plays every game from in and writes the results to out, in order. Returns the number of lines read. */
+    public long run(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        lines = 0;
+        ByteBuffer carry = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        carry.flip();
+        if (threads <= 1) {
+            Player player = new Player(min, max);
+            Chunk chunk = new Chunk();
+            while (fill(in, chunk, carry)) {
+                player.play(chunk);
+                write(out, chunk.out);
+            }
+            return lines;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "batch-player");
+            t.setDaemon(true);
+            return t;
+        });
+        ThreadLocal<Player> players = ThreadLocal.withInitial(() -> new Player(min, max));
+        ArrayDeque<Chunk> free = new ArrayDeque<>();
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        for (int i = 0; i < 2 * threads; i++) {
+            free.add(new Chunk());
+        }
+        try {
+            while (true) {
+                // Out of chunks: write out the oldest, which is next in order anyway
+                Chunk chunk = free.isEmpty() ? finish(pending.remove(), out) : free.remove();
+                if (!fill(in, chunk, carry)) {
+                    break;
+                }
+                final Chunk filled = chunk;
+                pending.add(pool.submit(() -> {
+                    players.get().play(filled);
+                    return filled;
+                }));
+            }
+            while (!pending.isEmpty()) {
+                finish(pending.remove(), out);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return lines;
+    }
+
+    private static Chunk finish(Future<Chunk> played, WritableByteChannel out) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = played.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Batch game failed", e.getCause());
+        }
+        write(out, chunk.out);
+        return chunk;
+    }
+
+    private static void write(WritableByteChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /**
+     * Fills the chunk with whole lines: what was left over from the last read,
+     * then as much as fits. Whatever follows the last newline is carried over to
+     * the next chunk. Returns false at the end of the input.
+     */
+    private boolean fill(ReadableByteChannel in, Chunk chunk, ByteBuffer carry) throws IOException {
+        ByteBuffer buf = chunk.in;
+        buf.clear();
+        chunk.overlong = 0;
+        boolean eof = false;
+        while (true) {
+            buf.put(carry);
+            carry.clear();
+            while (buf.hasRemaining()) {
+                if (in.read(buf) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            int end = buf.position();
+            int lastNewline = end - 1;
+            while (lastNewline >= 0 && buf.get(lastNewline) != '\n') {
+                lastNewline--;
+            }
+            if (lastNewline < 0 && !eof) {
+                // A whole chunk without a newline: drop the rest of that line and report it
+                chunk.overlong++;
+                lines++;
+                carry.flip();
+                buf.clear();
+                if (!skipLine(in, buf, carry)) {
+                    buf.flip();
+                    buf.limit(0);
+                    return true;
+                }
+                continue;
+            }
+            // At the end of the input the last line may have no newline
+            int cut = eof ? end : lastNewline + 1;
+            buf.position(cut);
+            buf.limit(end);
+            carry.put(buf);
+            carry.flip();
+            buf.position(0);
+            buf.limit(cut);
+            for (int i = 0; i < cut; i++) {
+                if (buf.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            if (eof && cut > 0 && buf.get(cut - 1) != '\n') {
+                lines++;
+            }
+            return cut > 0 || chunk.overlong > 0;
+        }
+    }
+
+    // Reads past the next newline; what follows it is left in carry. False at the end of the input.
+    private static boolean skipLine(ReadableByteChannel in, ByteBuffer buf, ByteBuffer carry) throws IOException {
+        while (true) {
+            buf.clear();
+            if (in.read(buf) < 0) {
+                return false;
+            }
+            for (int i = 0; i < buf.position(); i++) {
+                if (buf.get(i) == '\n') {
+                    buf.limit(buf.position());
+                    buf.position(i + 1);
+                    carry.clear();
+                    carry.put(buf);
+                    carry.flip();
+                    buf.clear();
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static int skipSpaces(ByteBuffer buf, int i, int end) {
+        while (i < end && (buf.get(i) == ' ' || buf.get(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int nextSpace(ByteBuffer buf, int i, int end) {
+        while (i < end && buf.get(i) != ' ' && buf.get(i) != '\t') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Usage: BatchRunner [--threads n] [input|-] [output|-]
+     * Reads stdin and writes stdout by default; uses every core unless told otherwise.
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int arg = 0;
+        if (args.length > 1 && args[0].equals("--threads")) {
+            threads = Integer.parseInt(args[1]);
+            arg = 2;
+        }
+        String input = args.length > arg ? args[arg] : "-";
+        String output = args.length > arg + 1 ? args[arg + 1] : "-";
+
+        BatchRunner runner = new BatchRunner(threads,
+                Long.getLong("guessinggame.min", GameEngine.DEFAULT_MIN),
+                Long.getLong("guessinggame.max", GameEngine.DEFAULT_MAX));
+        long begin = System.nanoTime();
+        long lines;
+        try (ReadableByteChannel in = input.equals("-") ? new FileInputStream(FileDescriptor.in).getChannel()
+                : FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+             WritableByteChannel out = output.equals("-") ? new FileOutputStream(FileDescriptor.out).getChannel()
+                : FileChannel.open(Paths.get(output), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            lines = runner.run(in, out);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        System.err.printf("%,d lines in %.2f s (%,.0f lines/s) on %d threads%n",
+                lines, seconds, lines / seconds, threads);
+    }
+}
@@ -0,0 +1,36 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Direct buffers of one size, reused so that connections coming and going do not
+ * allocate native memory each time. Holds at most a fixed number of free
+ * buffers; more can be out at once, and the extra ones are dropped on release.
+ */
+public final class BufferPool {
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> free;
+
+    public BufferPool(int bufferSize, int maxFree) {
+        this.bufferSize = bufferSize;
+        free = new ArrayBlockingQueue<>(maxFree);
+    }
+
+    /** A cleared buffer, BIG_ENDIAN. */
+    public ByteBuffer acquire() {
+        ByteBuffer buf = free.poll();
+        return buf != null ? buf : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public void release(ByteBuffer buf) {
+        buf.clear();
+        free.offer(buf);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getFree() {
+        return free.size();
+    }
+}
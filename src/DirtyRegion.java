@@ -0,0 +1,206 @@
+import java.awt.Rectangle;
+import javax.swing.JComponent;
+
+/**
+ * Collects the areas of a component that changed during one animation frame and
+ * repaints just those, instead of the whole component.
+ *
+ * Rectangles that lie close together are merged so a frame turns into a handful
+ * of small paints. The areas of occluders, widgets the animation does not show
+ * through, are then cut out, so painting the rest repaints none of the widgets.
+ * Swing's RepaintManager unions every repaint() of a component into one bounding
+ * box, which for elements spread over the window is the whole window, so the
+ * rectangles are painted directly.
+ *
+ * Storage is preallocated; adding and flushing rectangles allocates nothing.
+ */
+public class DirtyRegion {
+    private static final int MAX_RECTS = 24;
+    // Cutting out occluders splits rectangles; past this many pieces a rectangle is kept whole
+    private static final int MAX_PIECES = 256;
+    private static final int MAX_OCCLUDERS = 16;
+    // Merge two rectangles when their union wastes less than this many pixels
+    private static final int MERGE_SLACK = 48 * 48;
+
+    private int[] x1 = new int[MAX_PIECES];
+    private int[] y1 = new int[MAX_PIECES];
+    private int[] x2 = new int[MAX_PIECES];
+    private int[] y2 = new int[MAX_PIECES];
+    private int count;
+    // The pieces of one cut, swapped with the arrays above
+    private int[] cutX1 = new int[MAX_PIECES];
+    private int[] cutY1 = new int[MAX_PIECES];
+    private int[] cutX2 = new int[MAX_PIECES];
+    private int[] cutY2 = new int[MAX_PIECES];
+    private int cutCount;
+
+    private final int[] ox1 = new int[MAX_OCCLUDERS];
+    private final int[] oy1 = new int[MAX_OCCLUDERS];
+    private final int[] ox2 = new int[MAX_OCCLUDERS];
+    private final int[] oy2 = new int[MAX_OCCLUDERS];
+    private int occluders;
+    private int width;
+    private int height;
+
+    /** Starts a new frame for a component of the given size, with no rectangles and no occluders. */
+    public void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        count = 0;
+        occluders = 0;
+    }
+
+    /** Marks an area of the component that removeOccluded() cuts out; extra occluders are ignored. */
+    public void addOccluder(int x, int y, int w, int h) {
+        int ax1 = Math.max(0, x);
+        int ay1 = Math.max(0, y);
+        int ax2 = Math.min(width, x + w);
+        int ay2 = Math.min(height, y + h);
+        if (ax1 >= ax2 || ay1 >= ay2 || occluders == MAX_OCCLUDERS) {
+            return;
+        }
+        ox1[occluders] = ax1;
+        oy1[occluders] = ay1;
+        ox2[occluders] = ax2;
+        oy2[occluders] = ay2;
+        occluders++;
+    }
+
+    public void add(int x, int y, int w, int h) {
+        int ax1 = Math.max(0, x);
+        int ay1 = Math.max(0, y);
+        int ax2 = Math.min(width, x + w);
+        int ay2 = Math.min(height, y + h);
+        if (ax1 >= ax2 || ay1 >= ay2) {
+            return;
+        }
+
+        // Merge with the rectangle that grows the least, if that is cheap enough
+        int best = -1;
+        long bestWaste = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            long waste = mergeWaste(i, ax1, ay1, ax2, ay2);
+            if (waste < bestWaste) {
+                bestWaste = waste;
+                best = i;
+            }
+        }
+        if (best >= 0 && (bestWaste <= MERGE_SLACK || count >= MAX_RECTS)) {
+            x1[best] = Math.min(x1[best], ax1);
+            y1[best] = Math.min(y1[best], ay1);
+            x2[best] = Math.max(x2[best], ax2);
+            y2[best] = Math.max(y2[best], ay2);
+            return;
+        }
+        x1[count] = ax1;
+        y1[count] = ay1;
+        x2[count] = ax2;
+        y2[count] = ay2;
+        count++;
+    }
+
+    /**
+     * Cuts the occluders out of every rectangle, leaving up to four pieces of each
+     * around every occluder it overlaps. Call after the last add().
+     */
+    public void removeOccluded() {
+        for (int o = 0; o < occluders; o++) {
+            cutCount = 0;
+            for (int i = 0; i < count; i++) {
+                cut(i, ox1[o], oy1[o], ox2[o], oy2[o]);
+            }
+            keepPieces();
+        }
+    }
+
+    /** Paints the dirty rectangles of the component now. Must be called on the EDT. */
+    public void paintImmediately(JComponent component) {
+        for (int i = 0; i < count; i++) {
+            component.paintImmediately(x1[i], y1[i], x2[i] - x1[i], y2[i] - y1[i]);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getArea() {
+        long area = 0;
+        for (int i = 0; i < count; i++) {
+            area += (long) (x2[i] - x1[i]) * (y2[i] - y1[i]);
+        }
+        return area;
+    }
+
+    /** Copies rectangle i into r. */
+    public void getRect(int i, Rectangle r) {
+        r.setBounds(x1[i], y1[i], x2[i] - x1[i], y2[i] - y1[i]);
+    }
+
+    private long mergeWaste(int i, int ax1, int ay1, int ax2, int ay2) {
+        long union = (long) (Math.max(x2[i], ax2) - Math.min(x1[i], ax1))
+                * (Math.max(y2[i], ay2) - Math.min(y1[i], ay1));
+        long a = (long) (x2[i] - x1[i]) * (y2[i] - y1[i]);
+        long b = (long) (ax2 - ax1) * (ay2 - ay1);
+        long overlapW = Math.min(x2[i], ax2) - Math.max(x1[i], ax1);
+        long overlapH = Math.min(y2[i], ay2) - Math.max(y1[i], ay1);
+        long overlap = overlapW > 0 && overlapH > 0 ? overlapW * overlapH : 0;
+        return union - (a + b - overlap);
+    }
+
+    // Adds what is left of rectangle i around the occluder to the cut pieces
+    private void cut(int i, int cx1, int cy1, int cx2, int cy2) {
+        int ax1 = x1[i];
+        int ay1 = y1[i];
+        int ax2 = x2[i];
+        int ay2 = y2[i];
+        if (cx1 >= ax2 || cy1 >= ay2 || cx2 <= ax1 || cy2 <= ay1) {
+            piece(ax1, ay1, ax2, ay2);
+            return;
+        }
+        if (cutCount + 4 + count - 1 - i > MAX_PIECES) {
+            // Out of room for the pieces of this and the rest: paint it whole, widgets and all
+            piece(ax1, ay1, ax2, ay2);
+            return;
+        }
+        int my1 = Math.max(ay1, cy1);
+        int my2 = Math.min(ay2, cy2);
+        if (ay1 < cy1) {
+            piece(ax1, ay1, ax2, cy1);
+        }
+        if (cy2 < ay2) {
+            piece(ax1, cy2, ax2, ay2);
+        }
+        if (ax1 < cx1) {
+            piece(ax1, my1, cx1, my2);
+        }
+        if (cx2 < ax2) {
+            piece(cx2, my1, ax2, my2);
+        }
+    }
+
+    // The cut pieces become the rectangles, and the old rectangles the space for the next cut
+    private void keepPieces() {
+        int[] t = x1;
+        x1 = cutX1;
+        cutX1 = t;
+        t = y1;
+        y1 = cutY1;
+        cutY1 = t;
+        t = x2;
+        x2 = cutX2;
+        cutX2 = t;
+        t = y2;
+        y2 = cutY2;
+        cutY2 = t;
+        count = cutCount;
+    }
+
+    private void piece(int px1, int py1, int px2, int py2) {
+        cutX1[cutCount] = px1;
+        cutY1[cutCount] = py1;
+        cutX2[cutCount] = px2;
+        cutY2[cutCount] = py2;
+        cutCount++;
+    }
+}
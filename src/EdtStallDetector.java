@@ -0,0 +1,162 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reports every event the EDT takes longer than a threshold to dispatch.
+ *
+ * Installed on top of the system event queue, it times each dispatch. A
+ * watchdog thread polls the dispatch in progress and samples the EDT's stack
+ * once it runs over the threshold, so a report shows where the time went and
+ * not just which event it was. Reports are printed by the watchdog, never by the
+ * EDT, and a dispatch that has not finished after HANG_MILLIS is reported while
+ * it is still stuck.
+ *
+ * Events dispatched by a nested loop, e.g. inside a modal dialog, are timed on
+ * their own; the event that opened the loop is not counted as a stall.
+ *
+ * Threshold: -Dguessinggame.edtStallMillis (default 100, 0 to turn off).
+ */
+public final class EdtStallDetector extends EventQueue {
+    static final long DEFAULT_THRESHOLD_MILLIS = 100;
+    static final long HANG_MILLIS = 5000;
+
+    private final long thresholdNanos;
+    private final Thread watchdog;
+    private final ConcurrentLinkedQueue<Stall> finished = new ConcurrentLinkedQueue<>();
+
+    // Dispatch state, written on the EDT only
+    private int depth;
+    private long dispatched;
+    // Start of the innermost dispatch in progress, or 0 while idle; read by the watchdog
+    private volatile long dispatchStarted;
+    private volatile Thread edt;
+
+    // Written by the watchdog: the stack sampled during the dispatch that started at sampledStart
+    private volatile long sampledStart;
+    private volatile StackTraceElement[] sampledStack;
+    private long reportedHang;
+
+    private volatile long stalls;
+    private volatile long maxStallNanos;
+
+    private static final class Stall {
+        final String event;
+        final long nanos;
+        final StackTraceElement[] stack;
+
+        Stall(String event, long nanos, StackTraceElement[] stack) {
+            this.event = event;
+            this.nanos = nanos;
+            this.stack = stack;
+        }
+    }
+
+    public EdtStallDetector(long thresholdMillis) {
+        thresholdNanos = thresholdMillis * 1_000_000L;
+        watchdog = new Thread(this::watch, "edt-stall-watchdog");
+        watchdog.setDaemon(true);
+    }
+
+    /** Installs a detector with the configured threshold, or returns null if it is turned off. */
+    public static EdtStallDetector install() {
+        long threshold = Long.getLong("guessinggame.edtStallMillis", DEFAULT_THRESHOLD_MILLIS);
+        if (threshold <= 0) {
+            return null;
+        }
+        EdtStallDetector detector = new EdtStallDetector(threshold);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(detector);
+        detector.watchdog.start();
+        return detector;
+    }
+
+    public long getThresholdMillis() {
+        return thresholdNanos / 1_000_000;
+    }
+
+    /** Dispatches over the threshold so far. */
+    public long getStalls() {
+        return stalls;
+    }
+
+    public long getMaxStallMillis() {
+        return maxStallNanos / 1_000_000;
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long start = System.nanoTime();
+        long seq = ++dispatched;
+        if (depth++ == 0) {
+            edt = Thread.currentThread();
+        }
+        dispatchStarted = start;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long now = System.nanoTime();
+            depth--;
+            // The outer dispatch goes on pumping events, so time it afresh from here
+            dispatchStarted = depth > 0 ? now : 0;
+            long elapsed = now - start;
+            if (elapsed >= thresholdNanos && dispatched == seq) {
+                stalled(event, start, elapsed);
+            }
+        }
+    }
+
+    private void stalled(AWTEvent event, long start, long nanos) {
+        stalls++;
+        if (nanos > maxStallNanos) {
+            maxStallNanos = nanos;
+        }
+        StackTraceElement[] stack = sampledStart == start ? sampledStack : null;
+        finished.add(new Stall(event.getClass().getSimpleName() + "[" + event.paramString() + "]", nanos, stack));
+        GameEvents.EdtStall jfr = new GameEvents.EdtStall();
+        if (jfr.shouldCommit()) {
+            jfr.event = event.getClass().getSimpleName();
+            jfr.stall = nanos;
+            jfr.commit();
+        }
+    }
+
+    private void watch() {
+        long period = Math.max(thresholdNanos / 4, 1_000_000);
+        while (true) {
+            try {
+                Thread.sleep(period / 1_000_000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = dispatchStarted;
+            long running = System.nanoTime() - start;
+            if (start != 0 && running >= thresholdNanos && sampledStart != start) {
+                sampledStack = edt.getStackTrace();
+                sampledStart = start;
+            }
+            if (start != 0 && running >= HANG_MILLIS * 1_000_000L && reportedHang != start) {
+                reportedHang = start;
+                report("EDT stuck for " + running / 1_000_000 + " ms and counting", sampledStack);
+            }
+            Stall stall;
+            while ((stall = finished.poll()) != null) {
+                report("EDT stall: " + stall.nanos / 1_000_000 + " ms dispatching " + stall.event, stall.stack);
+            }
+        }
+    }
+
+    private static void report(String message, StackTraceElement[] stack) {
+        StringBuilder sb = new StringBuilder(message);
+        if (stack != null) {
+            for (StackTraceElement e : stack) {
+                // Below here is only the event loop
+                if (e.getClassName().equals("java.awt.EventQueue")) {
+                    break;
+                }
+                sb.append(System.lineSeparator()).append("\tat ").append(e);
+            }
+        }
+        System.err.println(sb);
+    }
+}
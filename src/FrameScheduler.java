@@ -0,0 +1,204 @@
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import javax.swing.Timer;
+
+/**
+ * Drives the background animation on the EDT.
+ *
+ * The scheduler pauses while its window is iconified or not showing, drops to a
+ * lower frame rate while the window is inactive or nobody has touched the mouse or
+ * keyboard for a while, and measures the real interval between frames. A late
+ * frame advances the simulation by the time that actually passed instead of
+ * queueing up the missed ticks, and is counted as dropped.
+ *
+ * AWT has no way to tell that a window is fully covered by other windows, so
+ * "hidden" here means iconified, not showing or deactivated.
+ *
+ * The active frame period is FRAME_PERIOD_MS unless setFramePeriod() lowers the
+ * rate, e.g. for a cheaper RenderQuality tier; the simulation still advances in
+ * FRAME_PERIOD_MS steps, so things move at the same speed at any rate.
+ */
+public class FrameScheduler {
+    public interface Listener {
+        /** Called once per frame with the number of nominal frame periods that elapsed. */
+        void onFrame(float steps);
+    }
+
+    public static final int FRAME_PERIOD_MS = 16;
+    public static final int IDLE_PERIOD_MS = 100;
+    private static final long IDLE_AFTER_NANOS = 30_000_000_000L;
+    // Never catch up more than this many frame periods at once, e.g. after a long GC
+    private static final int MAX_CATCH_UP = 4;
+
+    private final Listener listener;
+    private final Timer timer;
+    private int framePeriod = FRAME_PERIOD_MS;
+    private boolean running;
+    private boolean paused;
+    private boolean windowActive = true;
+    private volatile long lastInput = System.nanoTime();
+
+    private long lastFrame;
+    // Written on the EDT only; volatile so monitoring threads can read them
+    private volatile long frames;
+    private volatile long droppedFrames;
+    private long lastLateNanos;
+    private final LatencyHistogram frameIntervals = new LatencyHistogram();
+
+    public FrameScheduler(Listener listener) {
+        this.listener = listener;
+        timer = new Timer(FRAME_PERIOD_MS, e -> frame());
+        timer.setCoalesce(true);
+    }
+
+    public void start() {
+        running = true;
+        update();
+    }
+
+    public void stop() {
+        running = false;
+        update();
+    }
+
+    /** Follows the window's state: pause when hidden, slow down when inactive. */
+    public void bind(Window window) {
+        window.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowIconified(WindowEvent e) {
+                setPaused(true);
+            }
+
+            @Override
+            public void windowDeiconified(WindowEvent e) {
+                setPaused(false);
+            }
+
+            @Override
+            public void windowActivated(WindowEvent e) {
+                windowActive = true;
+                update();
+            }
+
+            @Override
+            public void windowDeactivated(WindowEvent e) {
+                windowActive = false;
+                update();
+            }
+        });
+        window.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                setPaused(true);
+            }
+
+            @Override
+            public void componentShown(ComponentEvent e) {
+                setPaused(false);
+            }
+        });
+        window.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                setPaused(!window.isShowing());
+            }
+        });
+
+        AWTEventListener input = e -> {
+            lastInput = System.nanoTime();
+            if (timer.getDelay() != framePeriod && windowActive) {
+                update();
+            }
+        };
+        Toolkit.getDefaultToolkit().addAWTEventListener(input,
+                AWTEvent.KEY_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK);
+    }
+
+    private void setPaused(boolean paused) {
+        this.paused = paused;
+        update();
+    }
+
+    private boolean isIdle() {
+        return !windowActive || System.nanoTime() - lastInput > IDLE_AFTER_NANOS;
+    }
+
+    private void update() {
+        if (running && !paused) {
+            int delay = isIdle() ? Math.max(IDLE_PERIOD_MS, framePeriod) : framePeriod;
+            if (timer.getDelay() != delay) {
+                timer.setDelay(delay);
+                timer.setInitialDelay(delay);
+            }
+            if (!timer.isRunning()) {
+                // Don't treat the time spent paused as a late frame
+                lastFrame = 0;
+                timer.start();
+            }
+        } else if (timer.isRunning()) {
+            timer.stop();
+        }
+    }
+
+    private void frame() {
+        long now = System.nanoTime();
+        float steps = 1;
+        lastLateNanos = 0;
+        if (lastFrame != 0) {
+            long interval = now - lastFrame;
+            frameIntervals.record(interval);
+            long expected = timer.getDelay() * 1_000_000L;
+            lastLateNanos = Math.max(0, interval - expected);
+            if (interval > expected * 3 / 2) {
+                droppedFrames += interval / expected - 1;
+            }
+            steps = Math.min(interval, expected * MAX_CATCH_UP) / (FRAME_PERIOD_MS * 1_000_000f);
+        }
+        lastFrame = now;
+        frames++;
+
+        // Check for idleness once per frame instead of on a separate timer
+        if (timer.getDelay() == framePeriod && isIdle()) {
+            update();
+        }
+        listener.onFrame(steps);
+    }
+
+    public boolean isRunning() {
+        return timer.isRunning();
+    }
+
+    public int getFramePeriodMillis() {
+        return timer.getDelay();
+    }
+
+    /** Sets the period of frames while the window is in use; idle windows still drop to IDLE_PERIOD_MS. */
+    public void setFramePeriod(int millis) {
+        framePeriod = millis;
+        update();
+    }
+
+    /** How much later than scheduled the current frame started, in nanoseconds. */
+    public long getLastLateNanos() {
+        return lastLateNanos;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /** Intervals between consecutive frames, in nanoseconds. Read on the EDT. */
+    public LatencyHistogram getFrameIntervals() {
+        return frameIntervals;
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs the game's commands on a thread of their own, off the EDT.
+ *
+ * UI events become commands: a listener reads what it needs from the components
+ * on the EDT and hands the rest to execute(). Commands run one at a time, in
+ * order, on the "game" thread, which owns the engine and does the journaling,
+ * logging and leaderboard work. A command hands its results back with view(),
+ * which queues one small update of the components on the EDT. Neither thread
+ * ever waits for the other, so nothing the game does can stall the UI.
+ *
+ * An inline dispatcher runs commands and view updates on the caller's thread,
+ * for benchmarks and training runs that drive the game without an event loop.
+ */
+public final class GameDispatcher {
+    private final ExecutorService executor;
+
+    /** A dispatcher with its own daemon thread of the given name. */
+    public GameDispatcher(String threadName) {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private GameDispatcher() {
+        executor = null;
+    }
+
+    /** A dispatcher that runs everything at once on the calling thread. */
+    public static GameDispatcher inline() {
+        return new GameDispatcher();
+    }
+
+    public boolean isInline() {
+        return executor == null;
+    }
+
+    /** Runs a command on the game thread after the ones before it. Commands after stop() are dropped. */
+    public void execute(Runnable command) {
+        if (executor == null) {
+            command.run();
+            return;
+        }
+        try {
+            executor.execute(command);
+        } catch (RejectedExecutionException e) {
+            // Stopped for exit
+        }
+    }
+
+    /** Queues an update of the components on the EDT. Call from commands only. */
+    public void view(Runnable update) {
+        if (executor == null) {
+            update.run();
+        } else {
+            SwingUtilities.invokeLater(update);
+        }
+    }
+
+    /**
+     * Stops taking commands and waits up to the timeout for the queued ones to
+     * finish, e.g. before closing the files they write. Safe to call more than once.
+     */
+    public void stop(long timeoutMillis) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/**
+ * Headless implementation of the guessing game rules.
+ *
+ * All session state is held in parallel primitive arrays indexed by session id,
+ * so the engine can host a very large number of games without creating an object
+ * per session or allocating on the guess path. Results are reported as int codes;
+ * turning them into text is left to the caller (see GuessingGameApp).
+ *
+ * Ranges can span the whole long domain. Narrowing and midpoints are computed so
+ * they cannot overflow, and every operation is O(1) whatever the size of the range.
+ *
+ * Every session has its own random stream, split from the engine's seed, and
+ * every game is dealt from a seed drawn from that stream (see getGameSeed), so a
+ * game can be dealt again exactly with newGame(session, difficulty, min, max, seed).
+ * With a GameJournal attached, every call that changes or reads a game is
+ * recorded, together with the difficulty it was played at, so the whole run can
+ * be replayed (see JournalReplay).
+ *
+ * An engine instance is not thread-safe: drive it from a single thread.
+ */
+public class GameEngine {
+    // Outcomes returned by guess()
+    public static final int ALREADY_OVER = 0;
+    public static final int OUT_OF_RANGE = 1;
+    public static final int TOO_LOW = 2;
+    public static final int TOO_HIGH = 3;
+    public static final int CORRECT = 4;
+    public static final int LOST = 5;
+
+    // Hint types returned by hint(); see HintEngine for how the class of the secret is packed in
+    public static final int HINT_GAME_OVER = 0;
+    public static final int HINT_TRY_MIDDLE = 1;
+    public static final int HINT_CLOSE = 2;
+    public static final int HINT_EVEN = 3;
+    public static final int HINT_ODD = 4;
+    public static final int HINT_LOWER_HALF = 5;
+    public static final int HINT_UPPER_HALF = 6;
+    public static final int HINT_QUARTER = 7;
+    public static final int HINT_MOD_3 = 8;
+    public static final int HINT_MOD_4 = 9;
+    public static final int HINT_DIGIT_SUM_3 = 10;
+
+    // Shared by every engine, so sessions in different engines hit the same memo table
+    private static final HintEngine HINTS = new HintEngine();
+
+    // Difficulty levels, in the order of the difficulty selector
+    public static final int EASY = 0;
+    public static final int MEDIUM = 1;
+    public static final int HARD = 2;
+
+    // Attempt limits for the default range of 1 to 100
+    public static final long DEFAULT_MIN = 1;
+    public static final long DEFAULT_MAX = 100;
+    public static final int MAX_ATTEMPTS_EASY = 15;
+    public static final int MAX_ATTEMPTS_MEDIUM = 10;
+    public static final int MAX_ATTEMPTS_HARD = 7;
+
+    private final int capacity;
+    private final long[] secret;
+    private final int[] attempts;
+    private final long[] minRange;
+    private final long[] maxRange;
+    private final boolean[] gameOver;
+    // The difficulty each game was last played at, for the journal
+    private final byte[] difficulty;
+    // Classes the current game's hints have given away (see HintEngine.revealedBy),
+    // and the narrowest bounds its half and quarter hints have named
+    private final int[] revealed;
+    private final long[] hintedMin;
+    private final long[] hintedMax;
+    // Per-session random streams and the seed each current game was dealt from
+    private final long[] stream;
+    private final long[] gameSeed;
+
+    // Free list of session ids, used as a stack
+    private final int[] freeIds;
+    private int freeCount;
+
+    // Reseeded for every deal, so drawing a secret allocates nothing
+    private final RandomSource deal = new RandomSource(0);
+    private GameJournal journal;
+
+    public GameEngine(int capacity) {
+        this(capacity, RandomSource.seedFor("engine"));
+    }
+
+    public GameEngine(int capacity, long seed) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        secret = new long[capacity];
+        attempts = new int[capacity];
+        minRange = new long[capacity];
+        maxRange = new long[capacity];
+        gameOver = new boolean[capacity];
+        difficulty = new byte[capacity];
+        revealed = new int[capacity];
+        hintedMin = new long[capacity];
+        hintedMax = new long[capacity];
+        stream = new long[capacity];
+        gameSeed = new long[capacity];
+        freeIds = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            freeIds[i] = capacity - 1 - i;
+            gameOver[i] = true;
+            stream[i] = RandomSource.seedFor(seed, i);
+        }
+        freeCount = capacity;
+    }
+
+    public static int maxAttempts(int difficulty) {
+        return maxAttempts(difficulty, DEFAULT_MIN, DEFAULT_MAX);
+    }
+
+    /**
+     * The attempt limit for a range: Hard allows exactly the guesses binary search
+     * needs in the worst case, Medium three more and Easy eight more. For 1 to 100
+     * that is 7, 10 and 15.
+     */
+    public static int maxAttempts(int difficulty, long min, long max) {
+        int needed = searchDepth(min, max);
+        switch (difficulty) {
+            case EASY: return needed + MAX_ATTEMPTS_EASY - MAX_ATTEMPTS_HARD;
+            case HARD: return needed;
+            default: return needed + MAX_ATTEMPTS_MEDIUM - MAX_ATTEMPTS_HARD;
+        }
+    }
+
+    /** Worst-case number of binary search guesses to find any number in [min, max]. */
+    public static int searchDepth(long min, long max) {
+        long count = max - min + 1;
+        // A count of 0 means all 2^64 values
+        return count == 0 ? 65 : 64 - Long.numberOfLeadingZeros(count);
+    }
+
+    /** Records every new game, guess, hint and game over into journal, or stops recording if null. */
+    public void setJournal(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    public GameJournal getJournal() {
+        return journal;
+    }
+
+    /** Reserves a session id, or returns -1 if the engine is full. */
+    public int allocate() {
+        if (freeCount == 0) {
+            return -1;
+        }
+        return freeIds[--freeCount];
+    }
+
+    /** Returns a session id to the pool. */
+    public void release(int session) {
+        gameOver[session] = true;
+        freeIds[freeCount++] = session;
+    }
+
+    public void newGame(int session, long min, long max) {
+        newGame(session, MEDIUM, min, max);
+    }
+
+    public void newGame(int session, int difficulty, long min, long max) {
+        newGame(session, difficulty, min, max, RandomSource.mix64(stream[session] += RandomSource.GAMMA));
+    }
+
+    /** Starts a game with the secret dealt from the given seed, as getGameSeed reports it. */
+    public void newGame(int session, int difficulty, long min, long max, long seed) {
+        if (min > max) {
+            throw new IllegalArgumentException("empty range: " + min + " to " + max);
+        }
+        minRange[session] = min;
+        maxRange[session] = max;
+        deal.setSeed(seed);
+        secret[session] = min + deal.nextLong(max - min + 1);
+        gameSeed[session] = seed;
+        attempts[session] = 0;
+        revealed[session] = 0;
+        hintedMin[session] = min;
+        hintedMax[session] = max;
+        gameOver[session] = false;
+        this.difficulty[session] = (byte) difficulty;
+        if (journal != null) {
+            journal.newGame(session, difficulty, min, max, seed);
+        }
+    }
+
+    /** A guess at the difficulty the game was last played at. */
+    public int guess(int session, long guess, int maxAttempts) {
+        return guess(session, guess, difficulty[session], maxAttempts);
+    }
+
+    /**
+     * Applies one guess to a session. The difficulty and maxAttempts are passed on
+     * every call because the limit follows the currently selected difficulty, as it
+     * does in the UI.
+     */
+    public int guess(int session, long guess, int difficulty, int maxAttempts) {
+        this.difficulty[session] = (byte) difficulty;
+        int outcome = play(session, guess, maxAttempts);
+        if (journal != null) {
+            journal.guess(session, guess, difficulty, maxAttempts, outcome);
+            if (outcome == CORRECT || outcome == LOST) {
+                journal.gameOver(session, attempts[session], outcome == CORRECT);
+            }
+        }
+        return outcome;
+    }
+
+    private int play(int session, long guess, int maxAttempts) {
+        if (gameOver[session]) {
+            return ALREADY_OVER;
+        }
+
+        if (outOfAttempts(session, maxAttempts)) {
+            return LOST;
+        }
+
+        if (guess < minRange[session] || guess > maxRange[session]) {
+            return OUT_OF_RANGE;
+        }
+
+        int n = ++attempts[session];
+        long target = secret[session];
+
+        // guess < target <= Long.MAX_VALUE and guess > target >= Long.MIN_VALUE, so neither overflows
+        if (guess < target) {
+            minRange[session] = guess + 1;
+        } else if (guess > target) {
+            maxRange[session] = guess - 1;
+        } else {
+            gameOver[session] = true;
+            return CORRECT;
+        }
+
+        if (n >= maxAttempts) {
+            gameOver[session] = true;
+            return LOST;
+        }
+        return guess < target ? TOO_LOW : TOO_HIGH;
+    }
+
+    public boolean expire(int session, int maxAttempts) {
+        return expire(session, difficulty[session], maxAttempts);
+    }
+
+    /** Ends the game if the attempt limit has already been used up. */
+    public boolean expire(int session, int difficulty, int maxAttempts) {
+        this.difficulty[session] = (byte) difficulty;
+        boolean expired = outOfAttempts(session, maxAttempts);
+        if (journal != null) {
+            journal.expire(session, difficulty, maxAttempts, expired);
+            if (expired) {
+                journal.gameOver(session, attempts[session], false);
+            }
+        }
+        return expired;
+    }
+
+    private boolean outOfAttempts(int session, int maxAttempts) {
+        if (!gameOver[session] && attempts[session] >= maxAttempts) {
+            gameOver[session] = true;
+            return true;
+        }
+        return false;
+    }
+
+    public int hint(int session) {
+        return hint(session, MEDIUM);
+    }
+
+    /**
+     * The most informative hint the difficulty allows for what is left of the game,
+     * as a packed code (see HintEngine.type and HintEngine.value). Halves and
+     * quarters split the part of the range earlier hints allow (getHintedMin to
+     * getHintedMax, read before the call), and remainders already given this game
+     * are not repeated.
+     */
+    public int hint(int session, int difficulty) {
+        int hint;
+        if (gameOver[session]) {
+            hint = HINT_GAME_OVER;
+        } else if (attempts[session] == 0) {
+            hint = HINT_TRY_MIDDLE;
+        } else {
+            long min = getHintedMin(session);
+            long max = getHintedMax(session);
+            hint = HINTS.hint(min, max, secret[session], difficulty, revealed[session]);
+            revealed[session] |= HintEngine.revealedBy(hint);
+            hintedMin[session] = HintEngine.lowerBound(hint, min, max);
+            hintedMax[session] = HintEngine.upperBound(hint, min, max);
+        }
+        if (journal != null) {
+            journal.hint(session, difficulty, hint);
+        }
+        return hint;
+    }
+
+    /** The middle of [min, max], rounded down, without overflow. */
+    public static long midpoint(long min, long max) {
+        return min + ((max - min) >>> 1);
+    }
+
+    // Getters
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getActiveSessions() {
+        return capacity - freeCount;
+    }
+
+    public long getSecret(int session) {
+        return secret[session];
+    }
+
+    /** The seed the session's current game was dealt from. */
+    public long getGameSeed(int session) {
+        return gameSeed[session];
+    }
+
+    public int getAttempts(int session) {
+        return attempts[session];
+    }
+
+    /** The difficulty the session's game was last played at. */
+    public int getDifficulty(int session) {
+        return difficulty[session];
+    }
+
+    public long getMinRange(int session) {
+        return minRange[session];
+    }
+
+    public long getMaxRange(int session) {
+        return maxRange[session];
+    }
+
+    public boolean isGameOver(int session) {
+        return gameOver[session];
+    }
+
+    /** The classes the current game's hints have revealed, as a HintEngine.REVEALED_* mask. */
+    public int getRevealed(int session) {
+        return revealed[session];
+    }
+
+    /** The smallest number in the range that the current game's half and quarter hints allow. */
+    public long getHintedMin(int session) {
+        return Math.max(minRange[session], hintedMin[session]);
+    }
+
+    /** The largest number in the range that the current game's half and quarter hints allow. */
+    public long getHintedMax(int session) {
+        return Math.min(maxRange[session], hintedMax[session]);
+    }
+
+    /** Whether x fits everything the current game's hints have said, as a player who took note would know. */
+    public boolean fitsHints(int session, long x) {
+        if (x < getHintedMin(session) || x > getHintedMax(session)) {
+            return false;
+        }
+        int known = revealed[session];
+        long target = secret[session];
+        if ((known & HintEngine.REVEALED_MOD_4) != 0 && Math.floorMod(x, 4L) != Math.floorMod(target, 4L)) {
+            return false;
+        }
+        if ((known & HintEngine.REVEALED_PARITY) != 0 && ((x ^ target) & 1) != 0) {
+            return false;
+        }
+        if ((known & HintEngine.REVEALED_MOD_3) != 0 && Math.floorMod(x, 3L) != Math.floorMod(target, 3L)) {
+            return false;
+        }
+        return (known & HintEngine.REVEALED_DIGIT_SUM_3) == 0 || (x % 3 == 0) == (target % 3 == 0);
+    }
+}
@@ -0,0 +1,103 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events for the game's hot paths.
+ *
+ * Each event's duration is the time between begin() and commit(). While no
+ * recording has them enabled, shouldCommit() is false and the field values are
+ * never computed, so the instrumentation costs next to nothing. Record with e.g.
+ *   jcmd <pid> JFR.start name=game settings=profile duration=60s filename=game.jfr
+ * and look for the "Guessing Game" category in JDK Mission Control.
+ */
+public final class GameEvents {
+    static final String[] OUTCOMES = {"already over", "out of range", "too low", "too high", "correct", "lost", "invalid"};
+    static final String[] DIFFICULTIES = {"Easy", "Medium", "Hard"};
+
+    private GameEvents() {
+    }
+
+    @Name("guessinggame.Guess")
+    @Label("Guess")
+    @Category("Guessing Game")
+    @Description("A guess entered by the player")
+    @StackTrace(false)
+    public static final class Guess extends Event {
+        @Label("Guess")
+        long guess;
+        @Label("Outcome")
+        String outcome;
+        @Label("Attempts")
+        int attempts;
+        @Label("Difficulty")
+        String difficulty;
+    }
+
+    @Name("guessinggame.Hint")
+    @Label("Hint")
+    @Category("Guessing Game")
+    @StackTrace(false)
+    public static final class Hint extends Event {
+        @Label("Hint Type")
+        int type;
+        @Label("Hint Value")
+        int value;
+        @Label("Difficulty")
+        String difficulty;
+    }
+
+    @Name("guessinggame.Sound")
+    @Label("Sound")
+    @Category("Guessing Game")
+    @Description("Queuing a feedback tone on the audio engine")
+    @StackTrace(false)
+    public static final class Sound extends Event {
+        @Label("Error Tone")
+        boolean error;
+    }
+
+    @Name("guessinggame.AnimationTick")
+    @Label("Animation Tick")
+    @Category({"Guessing Game", "Rendering"})
+    @Description("One animation frame, including the immediate repaint of what moved")
+    @StackTrace(false)
+    public static final class AnimationTick extends Event {
+        @Label("Steps")
+        @Description("Frame periods the animation advanced by")
+        float steps;
+        @Label("Dirty Rectangles")
+        int dirtyRects;
+        @Label("Dirty Area")
+        long dirtyArea;
+    }
+
+    @Name("guessinggame.Paint")
+    @Label("Paint")
+    @Category({"Guessing Game", "Rendering"})
+    @Description("One paintComponent pass of the game panel")
+    @StackTrace(false)
+    public static final class Paint extends Event {
+        @Label("Clip Width")
+        int clipWidth;
+        @Label("Clip Height")
+        int clipHeight;
+    }
+
+    @Name("guessinggame.EdtStall")
+    @Label("EDT Stall")
+    @Category({"Guessing Game", "Rendering"})
+    @Description("An event the EDT took longer than the stall threshold to dispatch, committed once it finished")
+    @StackTrace(false)
+    public static final class EdtStall extends Event {
+        @Label("Event Type")
+        String event;
+        @Label("Stall")
+        @Timespan
+        long stall;
+    }
+}
@@ -0,0 +1,173 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Binary journal of everything that happens to a GameEngine's sessions.
+ *
+ * Attach one to an engine with GameEngine.setJournal and every new game, guess,
+ * hint, expiry and game over is appended as a small little-endian record, so the
+ * journal can be fed back through the rules by JournalReplay. After a 16 byte
+ * header (magic, version, engine capacity) each record is a type byte, the int
+ * session id and then:
+ *   NEW_GAME   byte difficulty, long min, long max, long seed         (30 bytes)
+ *   GUESS      long guess, byte difficulty, short max attempts,
+ *              byte outcome                                           (17 bytes)
+ *   HINT       byte difficulty, int hint code                         (10 bytes)
+ *   EXPIRE     byte difficulty, short max attempts,
+ *              byte 1 if the game ended                               (9 bytes)
+ *   GAME_OVER  short attempts, byte 1 if won                          (8 bytes)
+ *
+ * Records collect in a direct buffer and are written when it fills and on flush,
+ * so recording costs a few stores per event. Write errors do not reach the game:
+ * the journal stops recording and keeps the error for getError(). Each journal
+ * starts a new file; an existing one is kept, renamed with its last modified time
+ * (journal.20261017-143005), so every launch's games can still be replayed.
+ */
+public class GameJournal implements AutoCloseable {
+    public static final byte NEW_GAME = 1;
+    public static final byte GUESS = 2;
+    public static final byte HINT = 3;
+    public static final byte EXPIRE = 4;
+    public static final byte GAME_OVER = 5;
+
+    static final int MAGIC = 0x474a4e31; // "GJN1"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    // The largest record, NEW_GAME
+    static final int MAX_RECORD_SIZE = 30;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long events;
+    private IOException error;
+    private boolean closed;
+
+    public GameJournal(File file, int capacity) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        rotate(file);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(0);
+    }
+
+    /** Size of a record of the given type, or 0 if the type is unknown. */
+    static int recordSize(int type) {
+        switch (type) {
+            case NEW_GAME: return 30;
+            case GUESS: return 17;
+            case HINT: return 10;
+            case EXPIRE: return 9;
+            case GAME_OVER: return 8;
+            default: return 0;
+        }
+    }
+
+    // Moves an earlier journal out of the way rather than overwrite it
+    private static void rotate(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(file.lastModified()));
+        File rotated = new File(file.getPath() + "." + stamp);
+        for (int n = 1; rotated.exists(); n++) {
+            rotated = new File(file.getPath() + "." + stamp + "-" + n);
+        }
+        Files.move(file.toPath(), rotated.toPath());
+    }
+
+    public synchronized void newGame(int session, int difficulty, long min, long max, long seed) {
+        if (start(NEW_GAME, session)) {
+            buf.put((byte) difficulty).putLong(min).putLong(max).putLong(seed);
+        }
+    }
+
+    public synchronized void guess(int session, long guess, int difficulty, int maxAttempts, int outcome) {
+        if (start(GUESS, session)) {
+            buf.putLong(guess).put((byte) difficulty).putShort((short) maxAttempts).put((byte) outcome);
+        }
+    }
+
+    public synchronized void hint(int session, int difficulty, int hint) {
+        if (start(HINT, session)) {
+            buf.put((byte) difficulty).putInt(hint);
+        }
+    }
+
+    public synchronized void expire(int session, int difficulty, int maxAttempts, boolean expired) {
+        if (start(EXPIRE, session)) {
+            buf.put((byte) difficulty).putShort((short) maxAttempts).put((byte) (expired ? 1 : 0));
+        }
+    }
+
+    public synchronized void gameOver(int session, int attempts, boolean won) {
+        if (start(GAME_OVER, session)) {
+            buf.putShort((short) attempts).put((byte) (won ? 1 : 0));
+        }
+    }
+
+    /** Writes out everything recorded so far. */
+    public synchronized void flush() {
+        if (!closed && error == null) {
+            drain();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        channel.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    public synchronized long getEvents() {
+        return events;
+    }
+
+    /** The write error that stopped the journal, or null. */
+    public synchronized IOException getError() {
+        return error;
+    }
+
+    // Makes room for a record and writes its type and session; false once the journal has stopped
+    private boolean start(byte type, int session) {
+        if (closed || error != null) {
+            return false;
+        }
+        if (buf.remaining() < MAX_RECORD_SIZE && !drain()) {
+            return false;
+        }
+        buf.put(type).putInt(session);
+        events++;
+        return true;
+    }
+
+    private boolean drain() {
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+            return true;
+        } catch (IOException e) {
+            error = e;
+            return false;
+        }
+    }
+}
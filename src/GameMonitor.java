@@ -0,0 +1,228 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The process-wide GameMonitorMBean.
+ *
+ * The game records into it with plain LongAdder increments, which never contend
+ * with a JMX client reading; the win rates come from the GameStatistics and the
+ * dropped frames from the FrameScheduler attached to it, the tier from its
+ * RenderQuality and the EDT stalls from its EdtStallDetector. Frame times are kept in
+ * a LatencyHistogram under the monitor's lock, taken once per frame.
+ */
+public class GameMonitor implements GameMonitorMBean {
+    public static final String OBJECT_NAME = "guessinggame:type=GameMonitor";
+
+    private static final GameMonitor SHARED = new GameMonitor();
+
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder guesses = new LongAdder();
+    private final LongAdder hints = new LongAdder();
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private volatile GameStatistics statistics;
+    private volatile FrameScheduler scheduler;
+    private volatile RenderQuality renderQuality;
+    private volatile EdtStallDetector stallDetector;
+    private volatile long timeToFirstFrame;
+    private boolean registered;
+
+    // Guess rate sampling, guarded by this
+    private long sampledAt = System.nanoTime();
+    private long sampledGuesses;
+    private double guessRate;
+
+    public static GameMonitor shared() {
+        return SHARED;
+    }
+
+    /** Publishes the monitor on the platform MBean server; later calls do nothing. */
+    public synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (JMException e) {
+            System.err.println("Game monitor not available over JMX: " + e.getMessage());
+        }
+    }
+
+    public void setStatistics(GameStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public void setScheduler(FrameScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public void setRenderQuality(RenderQuality renderQuality) {
+        this.renderQuality = renderQuality;
+    }
+
+    public void setStallDetector(EdtStallDetector stallDetector) {
+        this.stallDetector = stallDetector;
+    }
+
+    public void gameStarted() {
+        gamesStarted.increment();
+    }
+
+    public void gameFinished() {
+        gamesFinished.increment();
+    }
+
+    public void guess() {
+        guesses.increment();
+    }
+
+    public void hint() {
+        hints.increment();
+    }
+
+    public void firstFrame(long millisSinceJvmStart) {
+        timeToFirstFrame = millisSinceJvmStart;
+    }
+
+    public synchronized void frame(long nanos) {
+        frameTimes.record(nanos);
+    }
+
+    @Override
+    public long getGamesStarted() {
+        return gamesStarted.sum();
+    }
+
+    @Override
+    public long getGamesFinished() {
+        return gamesFinished.sum();
+    }
+
+    @Override
+    public long getGamesInProgress() {
+        // Read finished first so a game ending in between is not counted as negative
+        long finished = gamesFinished.sum();
+        return Math.max(0, gamesStarted.sum() - finished);
+    }
+
+    @Override
+    public long getGuesses() {
+        return guesses.sum();
+    }
+
+    @Override
+    public long getHints() {
+        return hints.sum();
+    }
+
+    @Override
+    public synchronized double getGuessesPerSecond() {
+        long now = System.nanoTime();
+        if (now - sampledAt >= 1_000_000_000L) {
+            long total = guesses.sum();
+            guessRate = (total - sampledGuesses) * 1e9 / (now - sampledAt);
+            sampledGuesses = total;
+            sampledAt = now;
+        }
+        return guessRate;
+    }
+
+    @Override
+    public double getWinRateEasy() {
+        return winRate(GameEngine.EASY);
+    }
+
+    @Override
+    public double getWinRateMedium() {
+        return winRate(GameEngine.MEDIUM);
+    }
+
+    @Override
+    public double getWinRateHard() {
+        return winRate(GameEngine.HARD);
+    }
+
+    private double winRate(int difficulty) {
+        GameStatistics s = statistics;
+        if (s == null) {
+            return 0;
+        }
+        GameStatistics.Counts counts = s.snapshot().getTotal(difficulty);
+        return counts.getGames() == 0 ? 0 : (double) counts.getWins() / counts.getGames();
+    }
+
+    @Override
+    public long getFrames() {
+        FrameScheduler s = scheduler;
+        return s == null ? 0 : s.getFrames();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        FrameScheduler s = scheduler;
+        return s == null ? 0 : s.getDroppedFrames();
+    }
+
+    @Override
+    public synchronized long getFrameTimeP50Micros() {
+        return frameTimes.percentile(50) / 1000;
+    }
+
+    @Override
+    public synchronized long getFrameTimeP90Micros() {
+        return frameTimes.percentile(90) / 1000;
+    }
+
+    @Override
+    public synchronized long getFrameTimeP99Micros() {
+        return frameTimes.percentile(99) / 1000;
+    }
+
+    @Override
+    public synchronized long getFrameTimeMaxMicros() {
+        return frameTimes.getMax() / 1000;
+    }
+
+    @Override
+    public String getRenderQuality() {
+        RenderQuality q = renderQuality;
+        if (q == null) {
+            return "";
+        }
+        RenderQuality.Tier tier = q.getTier();
+        return q.getPinned() != null ? tier + " (pinned)" : tier.toString();
+    }
+
+    @Override
+    public long getRenderQualityChanges() {
+        RenderQuality q = renderQuality;
+        return q == null ? 0 : q.getChanges();
+    }
+
+    @Override
+    public long getEdtStalls() {
+        EdtStallDetector d = stallDetector;
+        return d == null ? 0 : d.getStalls();
+    }
+
+    @Override
+    public long getEdtMaxStallMillis() {
+        EdtStallDetector d = stallDetector;
+        return d == null ? 0 : d.getMaxStallMillis();
+    }
+
+    @Override
+    public long getTimeToFirstFrameMillis() {
+        return timeToFirstFrame;
+    }
+
+    @Override
+    public synchronized void resetFrameTimes() {
+        frameTimes.reset();
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Live game and rendering counters, published over JMX by GameMonitor as
+ * guessinggame:type=GameMonitor. Times are in microseconds.
+ */
+public interface GameMonitorMBean {
+    long getGamesStarted();
+
+    long getGamesFinished();
+
+    long getGamesInProgress();
+
+    long getGuesses();
+
+    long getHints();
+
+    /** Guesses per second since the previous reading, over at least a second. */
+    double getGuessesPerSecond();
+
+    double getWinRateEasy();
+
+    double getWinRateMedium();
+
+    double getWinRateHard();
+
+    long getFrames();
+
+    long getDroppedFrames();
+
+    long getFrameTimeP50Micros();
+
+    long getFrameTimeP90Micros();
+
+    long getFrameTimeP99Micros();
+
+    long getFrameTimeMaxMicros();
+
+    /** The render quality tier in use: FULL, REDUCED or MINIMAL, with "(pinned)" when chosen by hand. */
+    String getRenderQuality();
+
+    long getRenderQualityChanges();
+
+    /** Events the EDT took longer than the stall threshold to dispatch. */
+    long getEdtStalls();
+
+    long getEdtMaxStallMillis();
+
+    /** Milliseconds from JVM start to the first painted frame, or 0 before it. */
+    long getTimeToFirstFrameMillis();
+
+    /** Starts the frame time percentiles afresh. */
+    void resetFrameTimes();
+}
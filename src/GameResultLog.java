@@ -0,0 +1,343 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append-only log of finished games, kept in a memory-mapped file.
+ *
+ * Every game is one fixed 16 byte record:
+ *   0  long   finish time, epoch millis
+ *   8  int    duration, millis
+ *   12 short  attempts
+ *   14 byte   difficulty
+ *   15 byte   1 if won, 0 if lost
+ *
+ * The file starts with a fixed size summary (record count and per difficulty
+ * wins, losses, attempts and best score) that is updated with every append, so
+ * the statistics load in constant time however long the log gets. The summary
+ * sits at the head rather than after the last record because appends would
+ * otherwise have to move it.
+ *
+ * Appends only write to memory. A background thread forces dirty pages to disk at
+ * most every COMMIT_INTERVAL_MS, so a burst of games shares one fsync. On open, any
+ * records written after the last summary update are found and folded back in. The
+ * header page can also reach the disk before the record pages it counts, as the
+ * system writes dirty pages back whenever it likes; if the last counted record is
+ * missing, the summary is rebuilt from the records that did make it.
+ */
+public class GameResultLog implements AutoCloseable {
+    public interface Visitor {
+        void visit(long finishedAt, int durationMillis, int attempts, int difficulty, boolean won);
+    }
+
+    public static final int RECORD_SIZE = 16;
+
+    private static final int MAGIC = 0x47524c31; // "GRL1"
+    private static final int DIFFICULTIES = 3;
+    // magic, record count, then wins, losses, attempts, best for each difficulty
+    private static final int SUMMARY_OFFSET = 16;
+    private static final int SUMMARY_STRIDE = 32;
+    private static final int HEADER_SIZE = 128;
+    private static final int SEGMENT_RECORDS = 64 * 1024;
+    private static final long SEGMENT_SIZE = (long) SEGMENT_RECORDS * RECORD_SIZE;
+    private static final long COMMIT_INTERVAL_MS = 50;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer segment;
+    private long segmentIndex = -1;
+
+    private long count;
+    private final long[] wins = new long[DIFFICULTIES];
+    private final long[] losses = new long[DIFFICULTIES];
+    private final long[] attempts = new long[DIFFICULTIES];
+    private final int[] best = new int[DIFFICULTIES];
+
+    // Group commit state, guarded by this
+    private boolean dirty;
+    private boolean closed;
+    private final Thread committer;
+
+    public GameResultLog(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean fresh = channel.size() < HEADER_SIZE;
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (fresh) {
+                header.putInt(0, MAGIC);
+                header.putLong(8, 0);
+            } else if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a game result log: " + file);
+            }
+            readSummary();
+            checkLastRecord();
+            recoverTail();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        committer = new Thread(this::commitLoop, "result-log-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /** Appends a finished game. Durable within COMMIT_INTERVAL_MS, or at flush(). */
+    public synchronized void append(long finishedAt, int durationMillis, int attemptCount,
+                                    int difficulty, boolean won) throws IOException {
+        if (closed) {
+            throw new IOException("Log is closed");
+        }
+        MappedByteBuffer buf = segmentFor(count);
+        int pos = (int) (count % SEGMENT_RECORDS) * RECORD_SIZE;
+        buf.putInt(pos + 8, durationMillis);
+        buf.putShort(pos + 12, (short) attemptCount);
+        buf.put(pos + 14, (byte) difficulty);
+        buf.put(pos + 15, (byte) (won ? 1 : 0));
+        // The timestamp goes last: a record with a non-zero timestamp is complete
+        buf.putLong(pos, finishedAt);
+
+        count++;
+        apply(difficulty, attemptCount, won);
+        writeSummary();
+        if (!dirty) {
+            dirty = true;
+            notifyAll();
+        }
+    }
+
+    /** Forces everything appended so far to disk. */
+    public void flush() throws IOException {
+        MappedByteBuffer buf;
+        synchronized (this) {
+            dirty = false;
+            buf = segment;
+        }
+        if (buf != null) {
+            buf.force();
+        }
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        flush();
+        channel.close();
+    }
+
+    public synchronized long getRecordCount() {
+        return count;
+    }
+
+    public synchronized long getWins(int difficulty) {
+        return wins[difficulty];
+    }
+
+    public synchronized long getLosses(int difficulty) {
+        return losses[difficulty];
+    }
+
+    /** Attempts summed over the games won at this difficulty. */
+    public synchronized long getTotalAttempts(int difficulty) {
+        return attempts[difficulty];
+    }
+
+    /** Fewest attempts of any win at this difficulty, or 0 if there is none. */
+    public synchronized int getBestAttempts(int difficulty) {
+        return best[difficulty];
+    }
+
+    public synchronized long getWins() {
+        return wins[0] + wins[1] + wins[2];
+    }
+
+    public synchronized long getTotalAttempts() {
+        return attempts[0] + attempts[1] + attempts[2];
+    }
+
+    /** Fewest attempts of any win, or 0 if there is none. */
+    public synchronized int getBestAttempts() {
+        int result = 0;
+        for (int b : best) {
+            if (b != 0 && (result == 0 || b < result)) {
+                result = b;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visits records [from, to) in order. Appended records never change, so this
+     * reads through its own mappings and does not hold up append().
+     */
+    public void replay(long from, long to, Visitor visitor) throws IOException {
+        synchronized (this) {
+            if (from < 0 || to > count || from > to) {
+                throw new IndexOutOfBoundsException("records " + from + " to " + to + " of " + count);
+            }
+        }
+        MappedByteBuffer buf = null;
+        long mapped = -1;
+        for (long i = from; i < to; i++) {
+            long index = i / SEGMENT_RECORDS;
+            if (index != mapped) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + index * SEGMENT_SIZE, SEGMENT_SIZE);
+                buf.order(ByteOrder.LITTLE_ENDIAN);
+                mapped = index;
+            }
+            int pos = (int) (i % SEGMENT_RECORDS) * RECORD_SIZE;
+            visitor.visit(buf.getLong(pos), buf.getInt(pos + 8), buf.getShort(pos + 12), buf.get(pos + 14),
+                    buf.get(pos + 15) != 0);
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            synchronized (this) {
+                while (!dirty && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            try {
+                // Let more games pile up behind this fsync
+                Thread.sleep(COMMIT_INTERVAL_MS);
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Could not write game results: " + e.getMessage());
+            }
+        }
+    }
+
+    private MappedByteBuffer segmentFor(long record) throws IOException {
+        long index = record / SEGMENT_RECORDS;
+        if (index == segmentIndex) {
+            return segment;
+        }
+        if (segment != null && index > segmentIndex) {
+            // Moving on to a new segment: the old one will not be written again
+            segment.force();
+        }
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * SEGMENT_SIZE, SEGMENT_SIZE);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segmentIndex = index;
+        return segment;
+    }
+
+    private void apply(int difficulty, int attemptCount, boolean won) {
+        if (won) {
+            wins[difficulty]++;
+            attempts[difficulty] += attemptCount;
+            if (best[difficulty] == 0 || attemptCount < best[difficulty]) {
+                best[difficulty] = attemptCount;
+            }
+        } else {
+            losses[difficulty]++;
+        }
+    }
+
+    private void readSummary() {
+        count = header.getLong(8);
+        for (int d = 0; d < DIFFICULTIES; d++) {
+            int base = SUMMARY_OFFSET + d * SUMMARY_STRIDE;
+            wins[d] = header.getLong(base);
+            losses[d] = header.getLong(base + 8);
+            attempts[d] = header.getLong(base + 16);
+            best[d] = header.getInt(base + 24);
+        }
+    }
+
+    private void writeSummary() {
+        for (int d = 0; d < DIFFICULTIES; d++) {
+            int base = SUMMARY_OFFSET + d * SUMMARY_STRIDE;
+            header.putLong(base, wins[d]);
+            header.putLong(base + 8, losses[d]);
+            header.putLong(base + 16, attempts[d]);
+            header.putInt(base + 24, best[d]);
+        }
+        header.putLong(8, count);
+    }
+
+    // Undo a summary that got to the disk ahead of its records: keep only the records
+    // up to the first one missing, since pages are written back in no particular order
+    private void checkLastRecord() throws IOException {
+        if (count == 0 || isComplete(count - 1)) {
+            return;
+        }
+        long counted = count;
+        count = 0;
+        Arrays.fill(wins, 0);
+        Arrays.fill(losses, 0);
+        Arrays.fill(attempts, 0);
+        Arrays.fill(best, 0);
+        while (count < counted && isComplete(count)) {
+            applyRecord(count);
+            count++;
+        }
+        // Records past the gap would otherwise be folded in again once appends reach them
+        long available = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        for (long record = count; record < available; record++) {
+            MappedByteBuffer buf = segmentFor(record);
+            buf.putLong((int) (record % SEGMENT_RECORDS) * RECORD_SIZE, 0);
+        }
+        if (segment != null) {
+            segment.force();
+        }
+        writeSummary();
+        header.force();
+    }
+
+    // Fold in records that reached the disk without their summary update
+    private void recoverTail() throws IOException {
+        long recovered = 0;
+        long available = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        while (count < available && isComplete(count)) {
+            applyRecord(count);
+            count++;
+            recovered++;
+        }
+        if (recovered > 0) {
+            writeSummary();
+            header.force();
+        }
+    }
+
+    // Whether the record was written in full: append() stores the timestamp last
+    private boolean isComplete(long record) throws IOException {
+        MappedByteBuffer buf = segmentFor(record);
+        int pos = (int) (record % SEGMENT_RECORDS) * RECORD_SIZE;
+        int difficulty = buf.get(pos + 14);
+        return buf.getLong(pos) != 0 && difficulty >= 0 && difficulty < DIFFICULTIES;
+    }
+
+    private void applyRecord(long record) throws IOException {
+        MappedByteBuffer buf = segmentFor(record);
+        int pos = (int) (record % SEGMENT_RECORDS) * RECORD_SIZE;
+        apply(buf.get(pos + 14), buf.getShort(pos + 12), buf.get(pos + 15) != 0);
+    }
+}
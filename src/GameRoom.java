@@ -0,0 +1,245 @@
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A room where many players race to guess the same secret, from any thread.
+ *
+ * Guesses narrow the room's range as they do in a single game. There is no lock:
+ * the lower bound only ever rises and the upper bound only ever falls, each by
+ * compare-and-set, so the secret always stays within [min, max] and concurrent
+ * guesses can apply in any order. A guess that would not tighten a bound writes
+ * nothing, so stale guesses do not fight over the cache line. The first correct
+ * guess claims the win by CAS; every later one, even of the same number, gets
+ * ALREADY_OVER, so exactly one player ever wins.
+ *
+ * Observers get immutable State snapshots on the notifier executor, which must
+ * run one task at a time. Changes that happen while a notification is pending
+ * are coalesced into it, so observers may skip states but always see the last
+ * one, and thousands of observers cost one pass per notification rather than
+ * one per guess.
+ */
+public class GameRoom {
+    public interface Observer {
+        void update(State state);
+    }
+
+    /** The room as it was at one point in time. */
+    public static final class State {
+        private final long version;
+        private final long min;
+        private final long max;
+        private final long guesses;
+        private final int winner;
+        private final long secret;
+
+        State(long version, long min, long max, long guesses, int winner, long secret) {
+            this.version = version;
+            this.min = min;
+            this.max = max;
+            this.guesses = guesses;
+            this.winner = winner;
+            this.secret = secret;
+        }
+
+        /** Grows with every change to the range or winner. */
+        public long getVersion() {
+            return version;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getGuesses() {
+            return guesses;
+        }
+
+        /** The winning player, or -1 while the round is open. */
+        public int getWinner() {
+            return winner;
+        }
+
+        public boolean isOver() {
+            return winner >= 0;
+        }
+
+        /** The secret once the room is won; until then 0. */
+        public long getSecret() {
+            return secret;
+        }
+    }
+
+    // The bounds sit a cache line apart so narrowing one does not slow down the other
+    private static final int MIN = 0;
+    private static final int MAX = 16;
+
+    private final long secret;
+    private final AtomicLongArray bounds = new AtomicLongArray(MAX + 1);
+    private final AtomicInteger winner = new AtomicInteger(-1);
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder guesses = new LongAdder();
+    private final AtomicIntegerArray playerGuesses;
+    private final AtomicInteger players = new AtomicInteger();
+
+    private final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+    private final Executor notifier;
+    private final AtomicBoolean notificationPending = new AtomicBoolean();
+
+    public GameRoom(long min, long max, long seed, int capacity, Executor notifier) {
+        if (min > max) {
+            throw new IllegalArgumentException("empty range: " + min + " to " + max);
+        }
+        secret = min + new RandomSource(seed).nextLong(max - min + 1);
+        bounds.set(MIN, min);
+        bounds.set(MAX, max);
+        playerGuesses = new AtomicIntegerArray(capacity);
+        this.notifier = notifier;
+    }
+
+    /** A new player id, or -1 if the room is full. */
+    public int join() {
+        int player;
+        do {
+            player = players.get();
+            if (player == playerGuesses.length()) {
+                return -1;
+            }
+        } while (!players.compareAndSet(player, player + 1));
+        return player;
+    }
+
+    /**
+     * Applies one guess, returning one of GameEngine's outcomes: ALREADY_OVER,
+     * OUT_OF_RANGE (also when another player's guess narrowed the range past it
+     * first), TOO_LOW, TOO_HIGH or CORRECT for the one winning guess.
+     */
+    public int guess(int player, long guess) {
+        if (winner.get() >= 0) {
+            return GameEngine.ALREADY_OVER;
+        }
+        if (guess < bounds.get(MIN) || guess > bounds.get(MAX)) {
+            return GameEngine.OUT_OF_RANGE;
+        }
+        guesses.increment();
+        playerGuesses.incrementAndGet(player);
+
+        int outcome;
+        boolean changed;
+        if (guess < secret) {
+            changed = raiseMin(guess + 1);
+            outcome = GameEngine.TOO_LOW;
+        } else if (guess > secret) {
+            changed = lowerMax(guess - 1);
+            outcome = GameEngine.TOO_HIGH;
+        } else {
+            changed = winner.compareAndSet(-1, player);
+            outcome = changed ? GameEngine.CORRECT : GameEngine.ALREADY_OVER;
+        }
+        if (changed) {
+            version.incrementAndGet();
+            scheduleNotification();
+        }
+        return outcome;
+    }
+
+    // guess < secret, so the new lower bound never passes the secret
+    private boolean raiseMin(long value) {
+        long current;
+        while ((current = bounds.get(MIN)) < value) {
+            if (bounds.compareAndSet(MIN, current, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean lowerMax(long value) {
+        long current;
+        while ((current = bounds.get(MAX)) > value) {
+            if (bounds.compareAndSet(MAX, current, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    /** Adds many observers with one copy of the list. */
+    public void addObservers(Collection<? extends Observer> many) {
+        observers.addAll(many);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    private void scheduleNotification() {
+        if (notificationPending.compareAndSet(false, true)) {
+            notifier.execute(this::notifyObservers);
+        }
+    }
+
+    private void notifyObservers() {
+        // Clear the flag before reading, so a change made after the read schedules another pass
+        notificationPending.set(false);
+        State state = getState();
+        for (Observer observer : observers) {
+            observer.update(state);
+        }
+    }
+
+    /**
+     * The room now. The version is read first, so the fields are at least as new
+     * as it says; since the bounds only tighten, any mix of them is a valid range.
+     */
+    public State getState() {
+        long current = version.get();
+        long min = bounds.get(MIN);
+        long max = bounds.get(MAX);
+        int won = winner.get();
+        return new State(current, min, max, guesses.sum(), won, won >= 0 ? secret : 0);
+    }
+
+    public long getMin() {
+        return bounds.get(MIN);
+    }
+
+    public long getMax() {
+        return bounds.get(MAX);
+    }
+
+    /** The winning player, or -1 while the round is open. */
+    public int getWinner() {
+        return winner.get();
+    }
+
+    public boolean isOver() {
+        return winner.get() >= 0;
+    }
+
+    public long getGuesses() {
+        return guesses.sum();
+    }
+
+    public int getGuesses(int player) {
+        return playerGuesses.get(player);
+    }
+
+    public int getPlayers() {
+        return players.get();
+    }
+}
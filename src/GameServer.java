@@ -0,0 +1,517 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * TCP server that plays the guessing game with remote players.
+ *
+ * One NIO selector thread owns a shared GameEngine, so the engine needs no
+ * locking. Each connection gets one engine session. The protocol is line based
+ * ASCII, one request and one response per line:
+ *
+ *   NEW [EASY|MEDIUM|HARD] [min max]
+ *                           ->  RANGE min max maxAttempts
+ *   GUESS n                 ->  LOW|HIGH attempts min max
+ *                               CORRECT attempts
+ *                               LOST attempts secret
+ *                               OUT_OF_RANGE min max | OVER | INVALID
+ *   HINT                    ->  HINT EVEN|ODD|LOWER|UPPER|CLOSE|MIDDLE|OVER
+ *                               HINT QUARTER q | MOD3 r | MOD4 r | DIGITSUM3 YES|NO
+ *   QUIT                    ->  (connection closed)
+ *
+ * A new game uses 1 to 100 unless a range is given; any range within the long
+ * domain works, with the attempt limit derived from its size. Unknown commands
+ * and malformed ranges get ERROR. Halves and quarters split what the range and
+ * the game's earlier halves and quarters leave (see GameEngine.hint).
+ *
+ * With --binary the server speaks WireCodec frames instead: NEW_GAME answers
+ * RANGE, GUESS answers RESULT followed by RANGE when the range narrowed or the
+ * guess missed it, HINT answers HINT, QUIT closes the connection, and invalid
+ * frames get ERROR. Binary connections use pooled direct buffers.
+ *
+ * With -Dguessinggame.journal=<file> every session's games are recorded in a
+ * GameJournal, which JournalReplay can check or replay later.
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 7777;
+
+    private static final int MAX_LINE = 128;
+    // Size of both binary buffers. Responses can be 3.2 times the size of their
+    // requests, so decoding pauses while out has no room for the largest one
+    private static final int BINARY_BUFFER = 1024;
+    // The largest binary response: RESULT and RANGE for a guess that missed
+    private static final int MAX_RESPONSE = WireCodec.frameSize(WireCodec.RESULT) + WireCodec.frameSize(WireCodec.RANGE);
+
+    private final GameEngine engine;
+    private final int[] difficulty;
+    private final int[] maxAttempts;
+    private final GuessParser parser = new GuessParser();
+    private final boolean binary;
+    private final WireCodec.Decoder decoder = new WireCodec.Decoder();
+    private final BufferPool buffers = new BufferPool(BINARY_BUFFER, 1024);
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+    private static final class Connection {
+        final int session;
+        final ByteBuffer in;
+        // Text: large enough for the responses to a full input buffer of requests.
+        // Binary: holds at least one response, see readFrames
+        final ByteBuffer out;
+        // Text: a line overflowed the input buffer, skip the rest of it up to its newline
+        boolean discarding;
+
+        Connection(int session, ByteBuffer in, ByteBuffer out) {
+            this.session = session;
+            this.in = in;
+            this.out = out;
+        }
+    }
+
+    public GameServer(int port, int capacity) throws IOException {
+        this(port, capacity, false);
+    }
+
+    public GameServer(int port, int capacity, boolean binary) throws IOException {
+        this.binary = binary;
+        engine = new GameEngine(capacity, RandomSource.seedFor("server"));
+        String journal = System.getProperty("guessinggame.journal");
+        if (journal != null) {
+            engine.setJournal(new GameJournal(new File(journal), capacity));
+        }
+        difficulty = new int[capacity];
+        maxAttempts = new int[capacity];
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 4096);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public void run() throws IOException {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            if (engine.getJournal() != null) {
+                engine.getJournal().close();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            int session = engine.allocate();
+            if (session < 0) {
+                // Engine is full
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            difficulty[session] = GameEngine.MEDIUM;
+            maxAttempts[session] = GameEngine.MAX_ATTEMPTS_MEDIUM;
+            engine.newGame(session, difficulty[session], GameEngine.DEFAULT_MIN, GameEngine.DEFAULT_MAX);
+            Connection conn = binary ? new Connection(session, buffers.acquire(), buffers.acquire())
+                    : new Connection(session, ByteBuffer.allocate(MAX_LINE * 2), ByteBuffer.allocate(MAX_LINE * 32));
+            channel.register(selector, SelectionKey.OP_READ, conn);
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection conn = (Connection) key.attachment();
+        if (channel.read(conn.in) < 0) {
+            close(key);
+            return;
+        }
+
+        ByteBuffer in = conn.in;
+        in.flip();
+        if (binary) {
+            readFrames(key, conn);
+            return;
+        }
+        int lineStart = 0;
+        for (int i = 0; i < in.limit(); i++) {
+            if (in.get(i) == '\n') {
+                if (conn.discarding) {
+                    // The tail of an overlong line, already answered with ERROR
+                    conn.discarding = false;
+                    lineStart = i + 1;
+                    continue;
+                }
+                int end = i > lineStart && in.get(i - 1) == '\r' ? i - 1 : i;
+                if (!handle(conn, in, lineStart, end)) {
+                    flush(key);
+                    close(key);
+                    return;
+                }
+                lineStart = i + 1;
+            }
+        }
+        in.position(lineStart);
+        in.compact();
+        if (!in.hasRemaining()) {
+            // Line longer than the buffer: drop it, with one ERROR however long it is
+            in.clear();
+            if (!conn.discarding) {
+                conn.discarding = true;
+                putAscii(conn.out, "ERROR\n");
+            }
+        }
+        flush(key);
+    }
+
+    // Decodes and answers the frames in conn.in, which is flipped, until it runs out
+    // of whole frames or conn.out of room; write() picks up where this left off
+    private void readFrames(SelectionKey key, Connection conn) throws IOException {
+        ByteBuffer in = conn.in;
+        int type;
+        while (true) {
+            if (conn.out.remaining() < MAX_RESPONSE) {
+                flush(key);
+                if (conn.out.remaining() < MAX_RESPONSE) {
+                    // The client is not reading; flush() has switched to OP_WRITE
+                    break;
+                }
+            }
+            if ((type = decoder.next(in)) == WireCodec.NEED_MORE) {
+                break;
+            }
+            if (type == WireCodec.MALFORMED) {
+                // The frame boundaries are lost, so nothing after this can be read
+                fitted(WireCodec.putError(conn.out, WireCodec.ERROR_MALFORMED));
+                flush(key);
+                close(key);
+                return;
+            }
+            if (!handleFrame(conn, type)) {
+                flush(key);
+                close(key);
+                return;
+            }
+        }
+        // Every frame is shorter than the buffer, so a full buffer always holds one to decode
+        in.compact();
+        flush(key);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        flush(key);
+        Connection conn = (Connection) key.attachment();
+        // Frames left undecoded while out was full: answer them now that it has drained
+        if (binary && conn.out.position() == 0 && conn.in.position() > 0) {
+            conn.in.flip();
+            readFrames(key, conn);
+        }
+    }
+
+    /** Handles one decoded frame; returns false when the client asked to quit. */
+    private boolean handleFrame(Connection conn, int type) {
+        ByteBuffer out = conn.out;
+        int session = conn.session;
+        switch (type) {
+            case WireCodec.NEW_GAME:
+                difficulty[session] = decoder.getDifficulty();
+                maxAttempts[session] = GameEngine.maxAttempts(difficulty[session], decoder.getMin(), decoder.getMax());
+                engine.newGame(session, difficulty[session], decoder.getMin(), decoder.getMax());
+                putRange(out, session);
+                return true;
+            case WireCodec.GUESS:
+                int outcome = engine.guess(session, decoder.getGuess(), difficulty[session], maxAttempts[session]);
+                boolean over = outcome == GameEngine.CORRECT || outcome == GameEngine.LOST;
+                fitted(WireCodec.putResult(out, outcome, engine.getAttempts(session), over ? engine.getSecret(session) : 0));
+                if (outcome == GameEngine.TOO_LOW || outcome == GameEngine.TOO_HIGH || outcome == GameEngine.OUT_OF_RANGE) {
+                    putRange(out, session);
+                }
+                return true;
+            case WireCodec.HINT:
+                int hint = engine.hint(session, difficulty[session]);
+                fitted(WireCodec.putHint(out, HintEngine.type(hint), HintEngine.value(hint)));
+                return true;
+            case WireCodec.QUIT:
+                return false;
+            default:
+                // Out-of-range values, or a frame only the server sends
+                fitted(WireCodec.putError(out, WireCodec.ERROR_INVALID));
+                return true;
+        }
+    }
+
+    private void putRange(ByteBuffer out, int session) {
+        fitted(WireCodec.putRange(out, engine.getMinRange(session), engine.getMaxRange(session),
+                engine.getAttempts(session), maxAttempts[session]));
+    }
+
+    // readFrames leaves room for any response, so one that does not fit is a bug, not a slow client
+    private static void fitted(boolean put) {
+        if (!put) {
+            throw new IllegalStateException("binary response does not fit the output buffer");
+        }
+    }
+
+    /** Handles one request line; returns false when the client asked to quit. */
+    private boolean handle(Connection conn, ByteBuffer in, int start, int end) {
+        ByteBuffer out = conn.out;
+        int session = conn.session;
+        int space = nextSpace(in, start, end);
+        int argStart = Math.min(space + 1, end);
+
+        if (matches(in, start, space, "GUESS")) {
+            if (!parser.parse(in, argStart, end)) {
+                putAscii(out, engine.isGameOver(session) ? "OVER\n" : "INVALID\n");
+                return true;
+            }
+            int outcome = engine.guess(session, parser.value(), difficulty[session], maxAttempts[session]);
+            int attempts = engine.getAttempts(session);
+            switch (outcome) {
+                case GameEngine.ALREADY_OVER:
+                    putAscii(out, "OVER");
+                    break;
+                case GameEngine.OUT_OF_RANGE:
+                    putAscii(out, "OUT_OF_RANGE ");
+                    putLong(out, engine.getMinRange(session));
+                    putAscii(out, " ");
+                    putLong(out, engine.getMaxRange(session));
+                    break;
+                case GameEngine.TOO_LOW:
+                case GameEngine.TOO_HIGH:
+                    putAscii(out, outcome == GameEngine.TOO_LOW ? "LOW " : "HIGH ");
+                    putLong(out, attempts);
+                    putAscii(out, " ");
+                    putLong(out, engine.getMinRange(session));
+                    putAscii(out, " ");
+                    putLong(out, engine.getMaxRange(session));
+                    break;
+                case GameEngine.CORRECT:
+                    putAscii(out, "CORRECT ");
+                    putLong(out, attempts);
+                    break;
+                case GameEngine.LOST:
+                    putAscii(out, "LOST ");
+                    putLong(out, attempts);
+                    putAscii(out, " ");
+                    putLong(out, engine.getSecret(session));
+                    break;
+            }
+            putAscii(out, "\n");
+        } else if (matches(in, start, space, "HINT")) {
+            putAscii(out, "HINT ");
+            int hint = engine.hint(session, difficulty[session]);
+            switch (HintEngine.type(hint)) {
+                case GameEngine.HINT_GAME_OVER: putAscii(out, "OVER\n"); break;
+                case GameEngine.HINT_TRY_MIDDLE: putAscii(out, "MIDDLE\n"); break;
+                case GameEngine.HINT_CLOSE: putAscii(out, "CLOSE\n"); break;
+                case GameEngine.HINT_EVEN: putAscii(out, "EVEN\n"); break;
+                case GameEngine.HINT_ODD: putAscii(out, "ODD\n"); break;
+                case GameEngine.HINT_LOWER_HALF: putAscii(out, "LOWER\n"); break;
+                case GameEngine.HINT_UPPER_HALF: putAscii(out, "UPPER\n"); break;
+                case GameEngine.HINT_QUARTER: putHint(out, "QUARTER ", HintEngine.value(hint)); break;
+                case GameEngine.HINT_MOD_3: putHint(out, "MOD3 ", HintEngine.value(hint)); break;
+                case GameEngine.HINT_MOD_4: putHint(out, "MOD4 ", HintEngine.value(hint)); break;
+                case GameEngine.HINT_DIGIT_SUM_3:
+                    putAscii(out, HintEngine.value(hint) == 0 ? "DIGITSUM3 YES\n" : "DIGITSUM3 NO\n");
+                    break;
+            }
+        } else if (matches(in, start, space, "NEW")) {
+            // NEW [difficulty] [min max]; without a difficulty the previous one is kept
+            int argEnd = nextSpace(in, argStart, end);
+            if (matches(in, argStart, argEnd, "EASY")) {
+                difficulty[session] = GameEngine.EASY;
+            } else if (matches(in, argStart, argEnd, "HARD")) {
+                difficulty[session] = GameEngine.HARD;
+            } else if (matches(in, argStart, argEnd, "MEDIUM")) {
+                difficulty[session] = GameEngine.MEDIUM;
+            } else {
+                argEnd = argStart - 1;
+            }
+            long min = GameEngine.DEFAULT_MIN;
+            long max = GameEngine.DEFAULT_MAX;
+            int minStart = Math.min(argEnd + 1, end);
+            if (minStart < end) {
+                int minEnd = nextSpace(in, minStart, end);
+                if (!parser.parse(in, minStart, minEnd)) {
+                    putAscii(out, "ERROR\n");
+                    return true;
+                }
+                min = parser.value();
+                if (minEnd >= end || !parser.parse(in, minEnd + 1, end) || parser.value() < min) {
+                    putAscii(out, "ERROR\n");
+                    return true;
+                }
+                max = parser.value();
+            }
+            maxAttempts[session] = GameEngine.maxAttempts(difficulty[session], min, max);
+            engine.newGame(session, difficulty[session], min, max);
+            putAscii(out, "RANGE ");
+            putLong(out, min);
+            putAscii(out, " ");
+            putLong(out, max);
+            putAscii(out, " ");
+            putLong(out, maxAttempts[session]);
+            putAscii(out, "\n");
+        } else if (matches(in, start, space, "QUIT")) {
+            return false;
+        } else {
+            putAscii(out, "ERROR\n");
+        }
+        return true;
+    }
+
+    private void flush(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        ByteBuffer out = conn.out;
+        out.flip();
+        ((SocketChannel) key.channel()).write(out);
+        out.compact();
+        // Stop reading while a response is still pending, so a client that does
+        // not read its responses cannot overflow the output buffer
+        int ops = out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        Object attachment = key.attachment();
+        if (attachment instanceof Connection) {
+            Connection conn = (Connection) attachment;
+            engine.release(conn.session);
+            if (binary) {
+                buffers.release(conn.in);
+                buffers.release(conn.out);
+            }
+            key.attach(null);
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+    }
+
+    // ASCII helpers working directly on the buffers, so requests allocate nothing
+
+    static boolean matches(ByteBuffer buf, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            int c = buf.get(start + i);
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            }
+            if (c != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int nextSpace(ByteBuffer buf, int from, int end) {
+        while (from < end && buf.get(from) != ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static void putHint(ByteBuffer buf, String name, int value) {
+        putAscii(buf, name);
+        putLong(buf, value);
+        putAscii(buf, "\n");
+    }
+
+    static void putAscii(ByteBuffer buf, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buf.put((byte) text.charAt(i));
+        }
+    }
+
+    static void putLong(ByteBuffer buf, long value) {
+        if (value < 0) {
+            buf.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                putAscii(buf, "9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buf.put((byte) ('0' + value / divisor % 10));
+            divisor /= 10;
+        }
+    }
+
+    /** Usage: GameServer [--binary] [port] [capacity] */
+    public static void main(String[] args) throws IOException {
+        boolean binary = args.length > 0 && args[0].equals("--binary");
+        int first = binary ? 1 : 0;
+        int port = args.length > first ? Integer.parseInt(args[first]) : DEFAULT_PORT;
+        int capacity = args.length > first + 1 ? Integer.parseInt(args[first + 1]) : 100_000;
+        GameServer server = new GameServer(port, capacity, binary);
+        System.out.println("Guessing game server listening on port " + server.getPort()
+                + " (" + capacity + " sessions, " + (binary ? "binary" : "text") + " protocol)");
+        final GameJournal journal = server.engine.getJournal();
+        if (journal != null) {
+            // Keep the journal's last records when the server is killed
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    // Nothing left to do at exit
+                }
+            }));
+        }
+        server.run();
+    }
+}
@@ -0,0 +1,357 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Streaming statistics of finished games, per difficulty.
+ *
+ * Wins are counted in a histogram by number of attempts, which gives the count,
+ * best score and percentiles; losses are a plain counter. The last hour and the
+ * last day are kept as rings of time slots that are recycled as time moves on.
+ * Everything lives in fixed-size atomic arrays, so memory does not grow with the
+ * number of games and any number of threads can record at once without taking a
+ * lock or waiting for each other, even while a time slot is being recycled.
+ *
+ * Readers take a snapshot(), which is consistent enough for display and export
+ * even while games are being recorded.
+ *
+ * save() writes every counter to a small fixed-size file and load() reads it
+ * back, so a restart does not have to record every earlier game again.
+ */
+public class GameStatistics {
+    public static final int DIFFICULTIES = 3;
+    // Attempts above this share the last bucket
+    public static final int MAX_TRACKED_ATTEMPTS = 127;
+    private static final int BUCKETS = MAX_TRACKED_ATTEMPTS + 1;
+
+    private static final int HOUR_SLOTS = 60;
+    private static final long HOUR_SLOT_MILLIS = 60_000;
+    private static final int DAY_SLOTS = 96;
+    private static final long DAY_SLOT_MILLIS = 15 * 60_000;
+    private static final int MAGIC = 0x47535432; // "GST2"
+
+    private final AtomicLongArray winsByAttempts = new AtomicLongArray(DIFFICULTIES * BUCKETS);
+    private final AtomicLongArray winAttempts = new AtomicLongArray(DIFFICULTIES);
+    private final AtomicLongArray losses = new AtomicLongArray(DIFFICULTIES);
+    private final Window lastHour = new Window(HOUR_SLOTS, HOUR_SLOT_MILLIS);
+    private final Window lastDay = new Window(DAY_SLOTS, DAY_SLOT_MILLIS);
+
+    public void record(int difficulty, int attempts, boolean won) {
+        record(difficulty, attempts, won, System.currentTimeMillis());
+    }
+
+    /** Records a game that finished at the given time, e.g. when replaying a log. */
+    public void record(int difficulty, int attempts, boolean won, long finishedAt) {
+        if (won) {
+            winsByAttempts.incrementAndGet(difficulty * BUCKETS + Math.min(Math.max(attempts, 0), MAX_TRACKED_ATTEMPTS));
+            winAttempts.addAndGet(difficulty, attempts);
+        } else {
+            losses.incrementAndGet(difficulty);
+        }
+        lastHour.record(difficulty, attempts, won, finishedAt);
+        lastDay.record(difficulty, attempts, won, finishedAt);
+    }
+
+    /**
+     * Writes every counter to the file, replacing it atomically, together with the
+     * number of games they cover. Games recorded meanwhile may be left out, so save
+     * while nothing else records.
+     */
+    public void save(File file, long games) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeLong(games);
+            write(out, winsByAttempts);
+            write(out, winAttempts);
+            write(out, losses);
+            lastHour.write(out);
+            lastDay.write(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads counters written by save() in place of these ones, before anything
+     * records, and returns the number of games they cover. Nothing changes if the
+     * file cannot be read or covers more than maxGames games, e.g. because it was
+     * saved for a longer log than the one it is loaded against.
+     */
+    public long load(File file, long maxGames) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a statistics file: " + file);
+            }
+            long games = in.readLong();
+            if (games < 0 || games > maxGames) {
+                throw new IOException("Statistics of " + games + " games, expected at most " + maxGames);
+            }
+            long[] histogram = read(in, winsByAttempts.length());
+            long[] attempts = read(in, winAttempts.length());
+            long[] lost = read(in, losses.length());
+            long[] hour = lastHour.read(in);
+            long[] day = lastDay.read(in);
+            set(winsByAttempts, histogram);
+            set(winAttempts, attempts);
+            set(losses, lost);
+            lastHour.set(hour);
+            lastDay.set(day);
+            return games;
+        }
+    }
+
+    private static void write(DataOutputStream out, AtomicLongArray array) throws IOException {
+        for (int i = 0; i < array.length(); i++) {
+            out.writeLong(array.get(i));
+        }
+    }
+
+    private static long[] read(DataInputStream in, int length) throws IOException {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    private static void set(AtomicLongArray array, long[] values) {
+        for (int i = 0; i < values.length; i++) {
+            array.set(i, values[i]);
+        }
+    }
+
+    public Snapshot snapshot() {
+        return snapshot(System.currentTimeMillis());
+    }
+
+    public Snapshot snapshot(long now) {
+        Snapshot s = new Snapshot();
+        for (int d = 0; d < DIFFICULTIES; d++) {
+            long wins = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                long n = winsByAttempts.get(d * BUCKETS + b);
+                s.histogram[d][b] = n;
+                wins += n;
+            }
+            s.total[d] = new Counts(wins, losses.get(d), winAttempts.get(d));
+            s.hour[d] = lastHour.sum(d, now);
+            s.day[d] = lastDay.sum(d, now);
+        }
+        return s;
+    }
+
+    /** Wins, losses and the attempts spent on the wins. */
+    public static final class Counts {
+        private final long wins;
+        private final long losses;
+        private final long attempts;
+
+        Counts(long wins, long losses, long attempts) {
+            this.wins = wins;
+            this.losses = losses;
+            this.attempts = attempts;
+        }
+
+        public long getWins() {
+            return wins;
+        }
+
+        public long getLosses() {
+            return losses;
+        }
+
+        public long getGames() {
+            return wins + losses;
+        }
+
+        /** Attempts summed over the wins. */
+        public long getAttempts() {
+            return attempts;
+        }
+
+        /** Average attempts per win, or 0 without wins. */
+        public double getMeanAttempts() {
+            return wins == 0 ? 0 : (double) attempts / wins;
+        }
+
+        Counts plus(Counts other) {
+            return new Counts(wins + other.wins, losses + other.losses, attempts + other.attempts);
+        }
+    }
+
+    /** A copy of the statistics at one moment. */
+    public static final class Snapshot {
+        private final long[][] histogram = new long[DIFFICULTIES][BUCKETS];
+        private final Counts[] total = new Counts[DIFFICULTIES];
+        private final Counts[] hour = new Counts[DIFFICULTIES];
+        private final Counts[] day = new Counts[DIFFICULTIES];
+
+        public Counts getTotal(int difficulty) {
+            return total[difficulty];
+        }
+
+        public Counts getLastHour(int difficulty) {
+            return hour[difficulty];
+        }
+
+        public Counts getLastDay(int difficulty) {
+            return day[difficulty];
+        }
+
+        /** All difficulties together. */
+        public Counts getTotal() {
+            return total[0].plus(total[1]).plus(total[2]);
+        }
+
+        /** Fewest attempts of any win at this difficulty, or 0 without wins. */
+        public int getBestAttempts(int difficulty) {
+            for (int b = 0; b < BUCKETS; b++) {
+                if (histogram[difficulty][b] != 0) {
+                    return b;
+                }
+            }
+            return 0;
+        }
+
+        /** Fewest attempts of any win, or 0 without wins. */
+        public int getBestAttempts() {
+            int best = 0;
+            for (int d = 0; d < DIFFICULTIES; d++) {
+                int b = getBestAttempts(d);
+                if (b != 0 && (best == 0 || b < best)) {
+                    best = b;
+                }
+            }
+            return best;
+        }
+
+        /** Attempts needed by the given percentage (0-100) of wins, or 0 without wins. */
+        public int getPercentile(int difficulty, double percentile) {
+            long wins = total[difficulty].wins;
+            if (wins == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * wins));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += histogram[difficulty][b];
+                if (seen >= rank) {
+                    return b;
+                }
+            }
+            return MAX_TRACKED_ATTEMPTS;
+        }
+
+        /** Number of wins that took exactly this many attempts. */
+        public long getWinsWithAttempts(int difficulty, int attempts) {
+            return histogram[difficulty][Math.min(attempts, MAX_TRACKED_ATTEMPTS)];
+        }
+    }
+
+    /**
+     * Counts over the last slots * slotMillis milliseconds. Every counter carries
+     * the period it counts in its top bits. A writer that finds an older period
+     * there swaps in its own count in the same compareAndSet that would have added
+     * to it, so recycling a slot needs no separate clearing step that others would
+     * have to wait for, and a game of an old period is never counted in a new one.
+     * Readers skip counters of periods outside the window.
+     */
+    private static final class Window {
+        // Periods are kept modulo 2^24: 32 years of minutes
+        private static final int PERIOD_BITS = 24;
+        private static final int COUNT_BITS = 64 - PERIOD_BITS;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        private final int slots;
+        private final long slotMillis;
+        // wins, losses, attempts for each difficulty, per slot
+        private final AtomicLongArray counts;
+
+        Window(int slots, long slotMillis) {
+            this.slots = slots;
+            this.slotMillis = slotMillis;
+            counts = new AtomicLongArray(slots * DIFFICULTIES * 3);
+        }
+
+        void record(int difficulty, int attempts, boolean won, long time) {
+            long period = Math.floorDiv(time, slotMillis);
+            int slot = (int) Math.floorMod(period, (long) slots);
+            int base = (slot * DIFFICULTIES + difficulty) * 3;
+            if (won) {
+                add(base, period, 1);
+                add(base + 2, period, attempts);
+            } else {
+                add(base + 1, period, 1);
+            }
+        }
+
+        // Adds to a counter, starting it afresh if it still counts an older period
+        private void add(int index, long period, long n) {
+            while (true) {
+                long value = counts.get(index);
+                long age = age(period, value);
+                long next;
+                if (age == 0 && (value & COUNT_MASK) != 0) {
+                    next = value + n;
+                } else if (age >= 0 || (value & COUNT_MASK) == 0) {
+                    next = (period << COUNT_BITS) | n;
+                } else {
+                    // Older than anything the window still holds
+                    return;
+                }
+                if (counts.compareAndSet(index, value, next)) {
+                    return;
+                }
+            }
+        }
+
+        // How many periods the counter's period lies before the given one
+        private static long age(long period, long value) {
+            return (period - (value >>> COUNT_BITS)) << COUNT_BITS >> COUNT_BITS;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            GameStatistics.write(out, counts);
+        }
+
+        long[] read(DataInputStream in) throws IOException {
+            return GameStatistics.read(in, counts.length());
+        }
+
+        void set(long[] saved) {
+            GameStatistics.set(counts, saved);
+        }
+
+        Counts sum(int difficulty, long now) {
+            long current = Math.floorDiv(now, slotMillis);
+            long wins = 0;
+            long losses = 0;
+            long attempts = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                int base = (slot * DIFFICULTIES + difficulty) * 3;
+                wins += count(base, current);
+                losses += count(base + 1, current);
+                attempts += count(base + 2, current);
+            }
+            return new Counts(wins, losses, attempts);
+        }
+
+        private long count(int index, long current) {
+            long value = counts.get(index);
+            long age = age(current, value);
+            return age >= 0 && age < slots ? value & COUNT_MASK : 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Parses decimal numbers over the full long range without allocating.
+ *
+ * parse() returns whether the text was a valid number and leaves the number in
+ * value(), so there is no sentinel value and no exception on bad input. Accepts an
+ * optional sign followed by digits, like Long.parseLong. Keep one parser per thread.
+ */
+public final class GuessParser {
+    private static final long MULT_MIN = Long.MIN_VALUE / 10;
+
+    private long value;
+
+    /** The number parsed by the last successful parse(). */
+    public long value() {
+        return value;
+    }
+
+    public boolean parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    public boolean parse(CharSequence text, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        char first = text.charAt(start);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            if (++start == end) {
+                return false;
+            }
+        }
+        // Accumulate negatively: the negative range is one larger than the positive one
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < MULT_MIN) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        value = negative ? result : -result;
+        return true;
+    }
+
+    /** Parses the ASCII bytes [start, end) of the buffer, without moving its position. */
+    public boolean parse(ByteBuffer buf, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        byte first = buf.get(start);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            if (++start == end) {
+                return false;
+            }
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9 || result < MULT_MIN) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        value = negative ? result : -result;
+        return true;
+    }
+}
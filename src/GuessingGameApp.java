@@ -1,35 +1,282 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.Random;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import java.io.File;
+import java.io.IOException;
 
 public class GuessingGameApp {
-    private int numberToGuess;
-    private int numberOfAttempts;
-    private int minRange;
-    private int maxRange;
-    private Random rand;
-    private GuessingGameForm form;
-    private boolean gameOver;
+    // When main() started, for measuring the time to the first frame
+    private static long mainStartedAt;
+    // Set by --train: exercise the game once after the first frame, then exit
+    private static boolean training;
+
+    // Runs the game commands; engine, session, gameStartedAt and the files below belong to its thread
+    private final GameDispatcher dispatcher;
+    private GameEngine engine;
+    private int session;
+    private final GuessingGameForm form;
     private JFrame frame;
+    private GameResultLog results;
+    private Leaderboard leaderboard;
+    // Whose scores go on the leaderboard, e.g. -Dguessinggame.player=alice
+    private final String player = System.getProperty("guessinggame.player", System.getProperty("user.name", "player"));
+    private final GameStatistics statistics = new GameStatistics();
+    // False while earlier games are still being replayed from the result log
+    private volatile boolean statisticsLoaded = true;
+    private long gameStartedAt;
+    // How long exit waits for queued game commands before closing the files
+    private static final long SHUTDOWN_MILLIS = 1000;
+    private static final String[] QUARTERS = {"first", "second", "third", "last"};
+    // Outcome of a guess that was not a number, after GameEngine's outcomes
+    private static final int INVALID_INPUT = 6;
+    // Read the text field on the EDT
+    private final GuessParser parser = new GuessParser();
+    private final Segment input = new Segment();
+    // Range of new games, e.g. -Dguessinggame.min=-9223372036854775808 -Dguessinggame.max=9223372036854775807
+    private final long rangeMin = Long.getLong("guessinggame.min", GameEngine.DEFAULT_MIN);
+    private final long rangeMax = Long.getLong("guessinggame.max", GameEngine.DEFAULT_MAX);
 
     public GuessingGameApp() {
-        rand = new Random();
-        form = new GuessingGameForm();
-        startNewGame();
+        this(new GuessingGameForm(), new GameDispatcher("game"));
+        form.setFirstFrameListener(this::firstFrameShown);
+        openResultLog();
+        openLeaderboard();
         createGUI();
+        GameMonitor monitor = GameMonitor.shared();
+        monitor.setStatistics(statistics);
+        monitor.setScheduler(form.getAnimationScheduler());
+        monitor.setRenderQuality(form.getRenderQuality());
+    }
+
+    // Without a frame, for driving the game from benchmarks; commands run on the caller's thread
+    GuessingGameApp(GuessingGameForm form) {
+        this(form, GameDispatcher.inline());
+    }
+
+    private GuessingGameApp(GuessingGameForm form, GameDispatcher dispatcher) {
+        this.form = form;
+        this.dispatcher = dispatcher;
+        engine = new GameEngine(1);
+        session = engine.allocate();
+        openJournal();
+        if (rangeMin > rangeMax) {
+            throw new IllegalArgumentException("guessinggame.min is above guessinggame.max");
+        }
+        form.setGameRange(rangeMin, rangeMax);
+        startNewGame();
+    }
+
+    // Startup ends with the first painted frame; everything that can wait starts here
+    private void firstFrameShown() {
+        long now = System.currentTimeMillis();
+        long sinceJvmStart = now - ManagementFactory.getRuntimeMXBean().getStartTime();
+        GameMonitor.shared().firstFrame(sinceJvmStart);
+        // Live counters for jconsole or any other JMX client
+        GameMonitor.shared().register();
+        System.out.println("First frame " + sinceJvmStart + " ms after JVM start ("
+                + (now - mainStartedAt) + " ms after main)");
+
+        // Open the audio line now rather than on the first guess
+        Thread warmUp = new Thread(AudioEngine::shared, "audio-warmup");
+        warmUp.setDaemon(true);
+        warmUp.start();
+
+        if (training) {
+            exercise();
+            // Exit once the commands and their view updates have run, so their classes are recorded too
+            dispatcher.execute(() -> dispatcher.view(() -> System.exit(0)));
+        }
+    }
+
+    // One pass over the paths a player takes, so a class list recorded by --train covers them
+    private void exercise() {
+        form.getGuessField().setText(Long.toString(GameEngine.midpoint(rangeMin, rangeMax)));
+        processGuess();
+        provideHint();
+        form.getGuessField().setText("not a number");
+        processGuess();
+        startNewGame();
+    }
+
+    void startNewGame() {
+        int difficulty = form.getDifficulty();
+        dispatcher.execute(() -> newGame(difficulty));
     }
 
-    private void startNewGame() {
-        minRange = 1;
-        maxRange = 100;
-        numberToGuess = rand.nextInt(maxRange - minRange + 1) + minRange;
-        numberOfAttempts = 0;
-        gameOver = false;
-        form.updateRange(minRange, maxRange);
-        form.updateAttempts(numberOfAttempts);
-        form.setResultText("", false);
-        form.clearInput();
+    private void newGame(int difficulty) {
+        if (!engine.isGameOver(session)) {
+            // An abandoned game
+            GameMonitor.shared().gameFinished();
+        }
+        engine.newGame(session, difficulty, rangeMin, rangeMax);
+        GameMonitor.shared().gameStarted();
+        gameStartedAt = System.nanoTime();
+        showResult("", false, true);
+    }
+
+    // With -Dguessinggame.journal=<file> every game is recorded for JournalReplay
+    private void openJournal() {
+        String file = System.getProperty("guessinggame.journal");
+        if (file == null) {
+            return;
+        }
+        try {
+            final GameJournal journal = new GameJournal(new File(file), engine.getCapacity());
+            engine.setJournal(journal);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                dispatcher.stop(SHUTDOWN_MILLIS);
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    // Nothing left to do at exit
+                }
+            }));
+        } catch (IOException e) {
+            System.err.println("Games will not be journaled: " + e.getMessage());
+        }
+    }
+
+    // Statistics survive restarts: they are saved next to the result log at exit, and
+    // any games the log appended after that (or everything, without a saved copy) are replayed
+    private void openResultLog() {
+        File file = new File(System.getProperty("guessinggame.log",
+                System.getProperty("user.home") + File.separator + ".guessinggame" + File.separator + "results.log"));
+        try {
+            results = new GameResultLog(file);
+        } catch (IOException e) {
+            System.err.println("Game results will not be saved: " + e.getMessage());
+            return;
+        }
+        long recorded = results.getRecordCount();
+        File statisticsFile = new File(file.getPath() + ".stats");
+        long saved = loadStatistics(statisticsFile, recorded);
+        if (saved < recorded) {
+            // The log's summary fills the panel at once; the full breakdown follows from a replay
+            form.showStatistics(results.getWins(), results.getTotalAttempts(), results.getBestAttempts());
+            statisticsLoaded = false;
+        } else {
+            form.showStatistics(statistics.snapshot());
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                results.replay(saved, recorded, (finishedAt, duration, attempts, difficulty, won) ->
+                        statistics.record(difficulty, attempts, won, finishedAt));
+            } catch (IOException e) {
+                System.err.println("Could not read earlier game results: " + e.getMessage());
+            }
+            // After the game thread's own updates so far, so the panel does not go back to the summary
+            dispatcher.execute(() -> {
+                statisticsLoaded = true;
+                GameStatistics.Snapshot snapshot = statistics.snapshot();
+                dispatcher.view(() -> form.showStatistics(snapshot));
+            });
+        }, "result-log-replay");
+        loader.setDaemon(true);
+        if (saved < recorded) {
+            loader.start();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            dispatcher.stop(SHUTDOWN_MILLIS);
+            try {
+                // Only once the replay is in, or the saved copy would miss earlier games
+                if (statisticsLoaded) {
+                    statistics.save(statisticsFile, results.getRecordCount());
+                }
+            } catch (IOException e) {
+                System.err.println("Could not save statistics: " + e.getMessage());
+            }
+            try {
+                results.close();
+            } catch (IOException e) {
+                // Nothing left to do at exit
+            }
+        }));
+    }
+
+    // Returns how many of the log's games the saved statistics cover, or 0 to replay them all
+    private long loadStatistics(File file, long recorded) {
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            return statistics.load(file, recorded);
+        } catch (IOException e) {
+            System.err.println("Replaying the result log, the saved statistics are unusable: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Best games per difficulty, ranked against every player who shares the file
+    private void openLeaderboard() {
+        File file = new File(System.getProperty("guessinggame.leaderboard",
+                System.getProperty("user.home") + File.separator + ".guessinggame" + File.separator + "leaderboard.dat"));
+        final Leaderboard board = new Leaderboard(file);
+        leaderboard = board;
+        // The file loads in the background; show the rank once it is in
+        Thread waiter = new Thread(() -> {
+            try {
+                board.awaitLoaded();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (board.getLoadError() != null) {
+                System.err.println("Could not read the leaderboard: " + board.getLoadError().getMessage());
+            }
+            SwingUtilities.invokeLater(() -> {
+                int difficulty = form.getDifficulty();
+                dispatcher.execute(() -> showRank(difficulty));
+            });
+        }, "leaderboard-load");
+        waiter.setDaemon(true);
+        waiter.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            dispatcher.stop(SHUTDOWN_MILLIS);
+            try {
+                board.close();
+            } catch (IOException e) {
+                // Nothing left to do at exit
+            }
+        }));
+    }
+
+    private void showRank(int difficulty) {
+        long rank = leaderboard.rank(player, difficulty);
+        int players = leaderboard.getPlayers(difficulty);
+        Leaderboard.Score best = leaderboard.getBest(player, difficulty);
+        dispatcher.view(() -> form.showRank(difficulty, rank, players, best));
+    }
+
+    private void recordResult(int difficulty, int attempts, boolean won) {
+        long finishedAt = System.currentTimeMillis();
+        int duration = (int) ((System.nanoTime() - gameStartedAt) / 1_000_000);
+        statistics.record(difficulty, attempts, won);
+        GameMonitor.shared().gameFinished();
+        // Scores from other ranges do not compare, so only the default range is ranked
+        if (won && leaderboard != null && rangeMin == GameEngine.DEFAULT_MIN && rangeMax == GameEngine.DEFAULT_MAX) {
+            leaderboard.submit(player, difficulty, attempts, duration, finishedAt);
+            showRank(difficulty);
+        }
+        if (results != null) {
+            try {
+                results.append(finishedAt, duration, attempts, difficulty, won);
+            } catch (IOException e) {
+                System.err.println("Could not save game result: " + e.getMessage());
+            }
+        }
+        if (statisticsLoaded) {
+            GameStatistics.Snapshot snapshot = statistics.snapshot();
+            dispatcher.view(() -> form.showStatistics(snapshot));
+        } else {
+            long wins = results.getWins();
+            long total = results.getTotalAttempts();
+            int best = results.getBestAttempts();
+            dispatcher.view(() -> form.showStatistics(wins, total, best));
+        }
     }
 
     private void createGUI() {
@@ -61,6 +308,9 @@ public class GuessingGameApp {
             }
         });
 
+        // Pause or slow the background animation when the window is hidden or idle
+        form.getAnimationScheduler().bind(frame);
+
         // Add guess button listener
         form.getGuessButton().addActionListener(new ActionListener() {
             @Override
@@ -90,86 +340,185 @@ public class GuessingGameApp {
         frame.setVisible(true);
     }
 
-    private void processGuess() {
-        if (gameOver) {
-            form.setResultText("Game Over! Start a new game.", true);
-            return;
+    // Reads the guess on the EDT and plays it on the game thread
+    void processGuess() {
+        // Parse straight from the text field's document, without creating a String
+        Document document = form.getGuessField().getDocument();
+        try {
+            document.getText(0, document.getLength(), input);
+        } catch (BadLocationException ex) {
+            input.count = 0;
         }
+        boolean valid = parser.parse(input);
+        long guess = parser.value();
+        int difficulty = form.getDifficulty();
+        int maxAttempts = form.getMaxAttempts();
+        dispatcher.execute(() -> playGuess(valid, guess, difficulty, maxAttempts));
+    }
 
-        if (numberOfAttempts >= form.getMaxAttempts()) {
-            gameOver = true;
-            form.setResultText("Game Over! The number was " + numberToGuess, true);
-            return;
+    private void playGuess(boolean valid, long guess, int difficulty, int maxAttempts) {
+        GameEvents.Guess event = new GameEvents.Guess();
+        event.begin();
+        int outcome = applyGuess(valid, guess, difficulty, maxAttempts);
+        GameMonitor.shared().guess();
+        if (event.shouldCommit()) {
+            event.guess = guess;
+            event.outcome = GameEvents.OUTCOMES[outcome];
+            event.attempts = engine.getAttempts(session);
+            event.difficulty = GameEvents.DIFFICULTIES[difficulty];
+            event.commit();
         }
+    }
 
-        try {
-            int guess = Integer.parseInt(form.getGuessField().getText());
-            
-            if (guess < minRange || guess > maxRange) {
-                form.setResultText("Please enter a number between " + minRange + " and " + maxRange, true);
-                return;
+    // Returns the outcome, or INVALID_INPUT if the text was not a number
+    private int applyGuess(boolean valid, long guess, int difficulty, int maxAttempts) {
+        if (!valid) {
+            if (engine.isGameOver(session)) {
+                showResult("Game Over! Start a new game.", true, false);
+                return GameEngine.ALREADY_OVER;
+            } else if (engine.expire(session, difficulty, maxAttempts)) {
+                showResult("Game Over! The number was " + engine.getSecret(session), true, false);
+                recordResult(difficulty, engine.getAttempts(session), false);
+                return GameEngine.LOST;
             }
+            showResult("Please enter a valid number", true, false);
+            return INVALID_INPUT;
+        }
 
-            numberOfAttempts++;
-            form.updateAttempts(numberOfAttempts);
-
-            if (guess < numberToGuess) {
-                minRange = guess + 1;
-                form.updateRange(minRange, maxRange);
-                if (numberOfAttempts >= form.getMaxAttempts()) {
-                    gameOver = true;
-                    form.setResultText("Game Over! The number was " + numberToGuess, true);
-                } else {
-                    form.setResultText("Too low! Try a higher number.", false);
-                }
-            } else if (guess > numberToGuess) {
-                maxRange = guess - 1;
-                form.updateRange(minRange, maxRange);
-                if (numberOfAttempts >= form.getMaxAttempts()) {
-                    gameOver = true;
-                    form.setResultText("Game Over! The number was " + numberToGuess, true);
-                } else {
-                    form.setResultText("Too high! Try a lower number.", false);
-                }
-            } else {
-                gameOver = true;
-                form.setResultText("Congratulations! You guessed the number in " + numberOfAttempts + " attempts!", false);
-                form.updateStats(numberOfAttempts);
-            }
-            
-            form.clearInput();
-        } catch (NumberFormatException ex) {
-            form.setResultText("Please enter a valid number", true);
+        int outcome = engine.guess(session, guess, difficulty, maxAttempts);
+        int attempts = engine.getAttempts(session);
+        switch (outcome) {
+            case GameEngine.ALREADY_OVER:
+                showResult("Game Over! Start a new game.", true, false);
+                return outcome;
+            case GameEngine.OUT_OF_RANGE:
+                showResult("Please enter a number between " + engine.getMinRange(session)
+                        + " and " + engine.getMaxRange(session), true, false);
+                return outcome;
+            case GameEngine.TOO_LOW:
+                showResult("Too low! Try a higher number.", false, true);
+                break;
+            case GameEngine.TOO_HIGH:
+                showResult("Too high! Try a lower number.", false, true);
+                break;
+            case GameEngine.CORRECT:
+                showResult("Congratulations! You guessed the number in " + attempts + " attempts!", false, true);
+                recordResult(difficulty, attempts, true);
+                break;
+            case GameEngine.LOST:
+                showResult("Game Over! The number was " + engine.getSecret(session), true, true);
+                recordResult(difficulty, attempts, false);
+                break;
         }
+        return outcome;
     }
 
-    private void provideHint() {
-        if (gameOver) {
-            form.setHint("Start a new game to get hints!");
-            return;
+    // Hands a result to the EDT as one update, with the attempts and range if the game moved on
+    private void showResult(String text, boolean isError, boolean advanced) {
+        if (advanced) {
+            int attempts = engine.getAttempts(session);
+            long min = engine.getMinRange(session);
+            long max = engine.getMaxRange(session);
+            dispatcher.view(() -> {
+                form.showResultText(text, isError);
+                form.updateAttempts(attempts);
+                form.updateRange(min, max);
+                form.clearInput();
+            });
+        } else {
+            dispatcher.view(() -> form.showResultText(text, isError));
+        }
+        if (!text.isEmpty()) {
+            form.playSound(isError);
+        }
+    }
+
+    void provideHint() {
+        int difficulty = form.getDifficulty();
+        dispatcher.execute(() -> playHint(difficulty));
+    }
+
+    private void playHint(int difficulty) {
+        GameEvents.Hint event = new GameEvents.Hint();
+        event.begin();
+        long min = engine.getHintedMin(session);
+        long max = engine.getHintedMax(session);
+        int hint = engine.hint(session, difficulty);
+        int value = HintEngine.value(hint);
+        String text = hintText(hint, min, max, engine.getHintedMin(session), engine.getHintedMax(session));
+        dispatcher.view(() -> form.setHint(text));
+        GameMonitor.shared().hint();
+        if (event.shouldCommit()) {
+            event.type = HintEngine.type(hint);
+            event.value = value;
+            event.difficulty = GameEvents.DIFFICULTIES[difficulty];
+            event.commit();
+        }
+    }
+
+    // min and max are what was left before the hint, from and to what is left after it
+    private static String hintText(int hint, long min, long max, long from, long to) {
+        int value = HintEngine.value(hint);
+        switch (HintEngine.type(hint)) {
+            case GameEngine.HINT_GAME_OVER:
+                return "Start a new game to get hints!";
+            case GameEngine.HINT_TRY_MIDDLE:
+                return "Try guessing a number in the middle of the range!";
+            case GameEngine.HINT_CLOSE:
+                return "You're getting close! The number is between " + min + " and " + max;
+            case GameEngine.HINT_EVEN:
+                return "The number is even";
+            case GameEngine.HINT_ODD:
+                return "The number is odd";
+            case GameEngine.HINT_LOWER_HALF:
+                return "The number is in the lower half, between " + from + " and " + to;
+            case GameEngine.HINT_UPPER_HALF:
+                return "The number is in the upper half, between " + from + " and " + to;
+            case GameEngine.HINT_QUARTER:
+                return "The number is in the " + QUARTERS[value] + " quarter, between " + from + " and " + to;
+            case GameEngine.HINT_MOD_3:
+            case GameEngine.HINT_MOD_4:
+                int divisor = HintEngine.type(hint) == GameEngine.HINT_MOD_3 ? 3 : 4;
+                return value == 0 ? "The number is divisible by " + divisor
+                        : "The number leaves a remainder of " + value + " when divided by " + divisor;
+            case GameEngine.HINT_DIGIT_SUM_3:
+                return value == 0 ? "The digits of the number add up to a multiple of 3"
+                        : "The digits of the number do not add up to a multiple of 3";
+            default:
+                return "";
         }
+    }
 
-        if (numberOfAttempts == 0) {
-            form.setHint("Try guessing a number in the middle of the range!");
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--server")) {
+            // Headless server mode: GuessingGameApp --server [--binary] [port] [capacity]
+            String[] serverArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, serverArgs, 0, serverArgs.length);
+            GameServer.main(serverArgs);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // Scripted games without a window: GuessingGameApp --batch [--threads n] [input|-] [output|-]
+            String[] batchArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, batchArgs, 0, batchArgs.length);
+            BatchRunner.main(batchArgs);
             return;
         }
 
-        int range = maxRange - minRange;
-        if (range <= 10) {
-            form.setHint("You're getting close! The number is between " + minRange + " and " + maxRange);
-        } else if (range <= 20) {
-            form.setHint("The number is " + (numberToGuess % 2 == 0 ? "even" : "odd"));
-        } else {
-            int midPoint = (minRange + maxRange) / 2;
-            if (numberToGuess < midPoint) {
-                form.setHint("The number is in the lower half of the range");
-            } else {
-                form.setHint("The number is in the upper half of the range");
+        mainStartedAt = System.currentTimeMillis();
+        if (args.length > 0 && args[0].equals("--train")) {
+            // Startup training run for the class data sharing archive (see build-cds.sh)
+            training = true;
+            if (GraphicsEnvironment.isHeadless()) {
+                trainHeadless();
+                return;
             }
         }
-    }
 
-    public static void main(String[] args) {
+        // Quote this in bug reports: -Dguessinggame.seed replays the same secrets and animation
+        System.out.println("Random seed: " + RandomSource.masterSeed());
+        // Anything that holds up the EDT past -Dguessinggame.edtStallMillis is reported on stderr
+        GameMonitor.shared().setStallDetector(EdtStallDetector.install());
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -177,4 +526,36 @@ public class GuessingGameApp {
             }
         });
     }
+
+    // Without a display: build and paint the UI offscreen, play a little, and exit
+    private static void trainHeadless() {
+        GuessingGameForm form = new GuessingGameForm();
+        form.stopAnimation();
+        form.addDeferredPanels();
+        RepaintManager.currentManager(form).setDoubleBufferingEnabled(false);
+        Dimension size = form.getPreferredSize();
+        form.setSize(size);
+        layoutTree(form);
+        GuessingGameApp app = new GuessingGameApp(form);
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        form.paint(g2d);
+        form.tick();
+        app.exercise();
+        form.paint(g2d);
+        g2d.dispose();
+        AudioEngine.shared();
+        System.exit(0);
+    }
+
+    // There is no peer to validate against offscreen, so lay out the tree by hand
+    private static void layoutTree(Component c) {
+        if (c instanceof Container) {
+            Container container = (Container) c;
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layoutTree(child);
+            }
+        }
+    }
 }
@@ -2,11 +2,7 @@ import javax.swing.*;
 import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
-import javax.sound.sampled.*;
-import java.io.ByteArrayInputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.awt.geom.*;
+import java.awt.image.BufferedImage;
 
 public class GuessingGameForm extends JPanel {
     private JPanel mainPanel;
@@ -23,23 +19,62 @@ public class GuessingGameForm extends JPanel {
     private JLabel highScoreLabel;
     private JLabel avgAttemptsLabel;
     private JLabel gamesPlayedLabel;
+    private JLabel rankLabel;
     private JLabel hintLabel;
+    private JLabel subtitleLabel;
     
-    private static final int MAX_ATTEMPTS_EASY = 15;
-    private static final int MAX_ATTEMPTS_MEDIUM = 10;
-    private static final int MAX_ATTEMPTS_HARD = 7;
-    private int maxAttempts = MAX_ATTEMPTS_MEDIUM;
+    private long gameMin = GameEngine.DEFAULT_MIN;
+    private long gameMax = GameEngine.DEFAULT_MAX;
+    private int maxAttempts = GameEngine.MAX_ATTEMPTS_MEDIUM;
+    private static final String[] DIFFICULTY_NAMES = {"Easy", "Medium", "Hard"};
     
-    private List<Integer> gameScores = new ArrayList<>();
-    private int highScore = Integer.MAX_VALUE;
-    private int gamesPlayed = 0;
-    private int totalAttempts = 0;
 
     // Background elements
-    private static final int NUM_BUBBLES = 20;
-    private List<Bubble> bubbles;
-    private Timer animationTimer;
-    private float hue = 0.0f;
+    private static final int NUM_BUBBLES = Integer.getInteger("guessinggame.particles", 20);
+    private ParticleField bubbles;
+    private FrameScheduler animationScheduler;
+    // How much of the animation to draw; follows the frame load unless pinned
+    private RenderQuality renderQuality;
+    private int activeNumbers = FLOATING_NUMBERS;
+    private boolean firstFramePainted;
+    // False after stopAnimation(), so the first frame does not start it again
+    private boolean animationWanted = true;
+    private Runnable firstFrameListener;
+    // Statistics that arrived before the stats panel was built
+    private Runnable pendingStatistics;
+
+    // Gradient and grid, rendered once per size into an opaque image
+    private BufferedImage backgroundLayer;
+
+    // Floating numbers are blitted from pre-rendered sprites, a fixed number per frame
+    private static final int FLOATING_NUMBERS = 10;
+    private static final Font FLOATING_NUMBER_FONT = new Font("Arial", Font.BOLD, 24);
+    private static final AlphaComposite[] FLOATING_NUMBER_ALPHAS = {
+        AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.05f),
+        AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.10f),
+        AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.15f),
+        AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.20f)
+    };
+    private static BufferedImage[] numberSprites;
+    private static int numberSpriteAscent;
+    private final int[] numberX = new int[FLOATING_NUMBERS];
+    private final int[] numberY = new int[FLOATING_NUMBERS];
+    private final int[] numberValue = new int[FLOATING_NUMBERS];
+    private final int[] numberAlpha = new int[FLOATING_NUMBERS];
+    private boolean numbersPlaced;
+    // Painted on the EDT only, so the stream needs no locking
+    private final RandomSource numbersRandom = RandomSource.named("numbers");
+
+    // Areas changed by the current animation frame, less the widgets
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    // The part of one paint's clip that the animation shows through
+    private final DirtyRegion paintRegion = new DirtyRegion();
+    private final Rectangle paintClip = new Rectangle();
+    private final Rectangle paintPiece = new Rectangle();
+    // Reused for every frame, so the animation loop allocates nothing
+    private final GameEvents.AnimationTick tickEvent = new GameEvents.AnimationTick();
+    private final GameEvents.Paint paintEvent = new GameEvents.Paint();
+    private JScrollPane scrollPane;
 
     // Custom colors with more vibrant options
     private static final Color PRIMARY_COLOR = new Color(0x0A192F);  // Darker blue
@@ -51,53 +86,39 @@ public class GuessingGameForm extends JPanel {
     private static final Color TEXT_COLOR = new Color(0xE6F1FF);     // Light blue-white
     private static final Color SUBTEXT_COLOR = new Color(0x8892B0);  // Muted blue-gray
 
+    private static final Color PANEL_OVERLAY_COLOR = new Color(PRIMARY_COLOR.getRed(), PRIMARY_COLOR.getGreen(), PRIMARY_COLOR.getBlue(), 200);
+    // The overlay is blitted in tiles, since a translucent fillRect allocates a mask on every call
+    private static final int OVERLAY_TILE = 64;
+    private static BufferedImage overlayTile;
+
+    // Cached skins for the rounded panels, stretched to any size
+    private static final WidgetSkins.NinePatch TITLE_GLOW = new WidgetSkins.NinePatch(16, (g2d, width, height) -> {
+        // Draw glowing effect
+        for (int i = 5; i > 0; i--) {
+            float alpha = 0.1f - (i * 0.02f);
+            g2d.setColor(new Color(ACCENT_COLOR.getRed(), ACCENT_COLOR.getGreen(), ACCENT_COLOR.getBlue(), (int)(alpha * 255)));
+            g2d.fillRoundRect(i, i, width - 2*i, height - 2*i, 20, 20);
+        }
+    });
+    private static final WidgetSkins.NinePatch PROGRESS_TRACK = new WidgetSkins.NinePatch(6, (g2d, width, height) -> {
+        g2d.setColor(SECONDARY_COLOR);
+        g2d.fillRoundRect(0, 0, width, height, 10, 10);
+    });
+    private static final WidgetSkins.NinePatch PROGRESS_FILL = new WidgetSkins.NinePatch(6, (g2d, width, height) -> {
+        g2d.setColor(ACCENT_COLOR);
+        g2d.fillRoundRect(0, 0, width, height, 10, 10);
+    });
+    private static final WidgetSkins.NinePatch STATS_GLASS = new WidgetSkins.NinePatch(8, (g2d, width, height) -> {
+        g2d.setColor(new Color(0, 0, 0, 150));
+        g2d.fillRoundRect(0, 0, width, height, 15, 15);
+    });
+
     // Minimum and preferred sizes for the window
     private static final int MIN_WIDTH = 500;   // Increased minimum width
     private static final int MIN_HEIGHT = 700;  // Increased minimum height
     private static final int PREF_WIDTH = 600;  // Increased preferred width
     private static final int PREF_HEIGHT = 800; // Increased preferred height
 
-    private class Bubble {
-        float x, y;
-        float size;
-        float speed;
-        Color color;
-        float alpha;
-        float rotation;
-        float rotationSpeed;
-
-        Bubble() {
-            reset();
-        }
-
-        void reset() {
-            x = (float) (Math.random() * getWidth());
-            y = getHeight() + size;
-            size = (float) (Math.random() * 40 + 20);  // Larger bubbles
-            speed = (float) (Math.random() * 3 + 1);   // Faster movement
-            alpha = (float) (Math.random() * 0.4 + 0.2);
-            rotation = (float) (Math.random() * 360);
-            rotationSpeed = (float) (Math.random() * 2 - 1);
-            color = new Color(ACCENT_COLOR.getRed(), ACCENT_COLOR.getGreen(), ACCENT_COLOR.getBlue(), (int)(alpha * 255));
-        }
-
-        void update() {
-            y -= speed;
-            rotation += rotationSpeed;
-            if (y < -size) {
-                reset();
-            }
-        }
-
-        void draw(Graphics2D g2d) {
-            g2d.setColor(color);
-            AffineTransform oldTransform = g2d.getTransform();
-            g2d.rotate(Math.toRadians(rotation), x + size/2, y + size/2);
-            g2d.fill(new Ellipse2D.Float(x, y, size, size));
-            g2d.setTransform(oldTransform);
-        }
-    }
-
     public GuessingGameForm() {
         setLayout(new BorderLayout());
         setBackground(PRIMARY_COLOR);
@@ -105,33 +126,20 @@ public class GuessingGameForm extends JPanel {
         setPreferredSize(new Dimension(PREF_WIDTH, PREF_HEIGHT));
         
         // Initialize bubbles
-        bubbles = new ArrayList<>();
-        for (int i = 0; i < NUM_BUBBLES; i++) {
-            bubbles.add(new Bubble());
-        }
+        bubbles = new ParticleField(NUM_BUBBLES, ACCENT_COLOR, RandomSource.seedFor("bubbles"));
 
-        // Create animation timer
-        animationTimer = new Timer(16, e -> {
-            for (Bubble bubble : bubbles) {
-                bubble.update();
-            }
-            hue = (hue + 0.001f) % 1.0f;
-            repaint();
-        });
-        animationTimer.start();
+        // Create animation timer; it starts once the first frame is on screen
+        animationScheduler = new FrameScheduler(this::animationFrame);
+        renderQuality = new RenderQuality(this::applyRenderQuality);
+        applyRenderQuality(renderQuality.getTier());
 
         // Create main content panel with padding
         mainPanel = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-
-                // Draw semi-transparent background
-                g2d.setColor(new Color(PRIMARY_COLOR.getRed(), PRIMARY_COLOR.getGreen(), PRIMARY_COLOR.getBlue(), 200));
-                g2d.fillRect(0, 0, getWidth(), getHeight());
+                // The semi-transparent background is painted by the form, over the animation
+                renderQuality.applyHints((Graphics2D) g);
             }
         };
         mainPanel.setLayout(new BoxLayout(mainPanel, BoxLayout.Y_AXIS));
@@ -139,10 +147,14 @@ public class GuessingGameForm extends JPanel {
         mainPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
         // Create scroll pane for the main panel
-        JScrollPane scrollPane = new JScrollPane(mainPanel);
+        scrollPane = new JScrollPane(mainPanel);
         scrollPane.setBorder(null);
         scrollPane.setBackground(PRIMARY_COLOR);
         scrollPane.getViewport().setBackground(PRIMARY_COLOR);
+        // Show the animated background through the translucent content. The content
+        // was never opaque, so scrolling repaints instead of blitting either way
+        scrollPane.setOpaque(false);
+        scrollPane.getViewport().setOpaque(false);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
 
@@ -157,12 +169,10 @@ public class GuessingGameForm extends JPanel {
         
         // Create feedback panel with animations
         JPanel feedbackPanel = createFeedbackPanel();
-        
-        // Create stats panel with glass effect
-        statsPanel = createStatsPanel();
-        
-        // Create hint panel with custom styling
-        JPanel hintPanel = createHintPanel();
+
+        // The stats and hint panels are below the fold and follow the first frame (see addDeferredPanels);
+        // the hint controls exist from the start so listeners can be attached to them
+        createHintControls();
 
         // Add all panels to main panel with proper spacing
         mainPanel.add(titlePanel);
@@ -172,14 +182,16 @@ public class GuessingGameForm extends JPanel {
         mainPanel.add(inputPanel);
         mainPanel.add(Box.createRigidArea(new Dimension(0, 20)));
         mainPanel.add(feedbackPanel);
-        mainPanel.add(Box.createRigidArea(new Dimension(0, 20)));
-        mainPanel.add(statsPanel);
-        mainPanel.add(Box.createRigidArea(new Dimension(0, 20)));
-        mainPanel.add(hintPanel);
 
         // Add scroll pane to this panel
         add(scrollPane, BorderLayout.CENTER);
 
+        // Right-click the background to pin a render quality
+        setComponentPopupMenu(createQualityMenu());
+        scrollPane.setInheritsPopupMenu(true);
+        scrollPane.getViewport().setInheritsPopupMenu(true);
+        mainPanel.setInheritsPopupMenu(true);
+
         // Add input validation with visual feedback
         guessField.addKeyListener(new KeyAdapter() {
             public void keyPressed(KeyEvent e) {
@@ -190,80 +202,367 @@ public class GuessingGameForm extends JPanel {
         });
     }
 
+    private JPopupMenu createQualityMenu() {
+        JPopupMenu menu = new JPopupMenu();
+        ButtonGroup group = new ButtonGroup();
+        JRadioButtonMenuItem auto = new JRadioButtonMenuItem("Render Quality: Auto", renderQuality.getPinned() == null);
+        auto.addActionListener(e -> renderQuality.setPinned(null));
+        group.add(auto);
+        menu.add(auto);
+        for (RenderQuality.Tier tier : RenderQuality.Tier.values()) {
+            String name = tier.name().charAt(0) + tier.name().substring(1).toLowerCase();
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem("Render Quality: " + name, renderQuality.getPinned() == tier);
+            item.addActionListener(e -> renderQuality.setPinned(tier));
+            group.add(item);
+            menu.add(item);
+        }
+        return menu;
+    }
+
+    // A frame from the scheduler: animate it and tell the governor what it cost
+    private void animationFrame(float steps) {
+        long start = System.nanoTime();
+        tick(steps);
+        long now = System.nanoTime();
+        renderQuality.frame(now, now - start, animationScheduler.getLastLateNanos());
+    }
+
+    private void applyRenderQuality(RenderQuality.Tier tier) {
+        bubbles.setActive(tier.bubbles(bubbles.getCount()));
+        activeNumbers = tier.numbers(FLOATING_NUMBERS);
+        animationScheduler.setFramePeriod(tier.getFramePeriodMillis());
+        // Clear whatever the previous tier drew that this one no longer does
+        repaint();
+    }
+
+    public RenderQuality getRenderQuality() {
+        return renderQuality;
+    }
+
+    /** Runs on the EDT once the first frame has been painted. */
+    public void setFirstFrameListener(Runnable listener) {
+        firstFrameListener = listener;
+    }
+
+    // After the first paint: the rest of the UI, then the animation
+    private void afterFirstFrame() {
+        addDeferredPanels();
+        if (animationWanted) {
+            animationScheduler.start();
+        }
+        if (firstFrameListener != null) {
+            firstFrameListener.run();
+        }
+    }
+
+    void addDeferredPanels() {
+        if (statsPanel != null) {
+            return;
+        }
+        // Create stats panel with glass effect
+        statsPanel = createStatsPanel();
+
+        // Create hint panel with custom styling
+        JPanel hintPanel = createHintPanel();
+
+        mainPanel.add(Box.createRigidArea(new Dimension(0, 20)));
+        mainPanel.add(statsPanel);
+        mainPanel.add(Box.createRigidArea(new Dimension(0, 20)));
+        mainPanel.add(hintPanel);
+        mainPanel.revalidate();
+
+        if (pendingStatistics != null) {
+            pendingStatistics.run();
+            pendingStatistics = null;
+        }
+    }
+
+    void tick() {
+        tick(1);
+    }
+
+    // One animation frame: advance the bubbles and repaint only what moved, around the widgets
+    void tick(float steps) {
+        long start = System.nanoTime();
+        GameEvents.AnimationTick event = tickEvent;
+        event.begin();
+        int width = getWidth();
+        int height = getHeight();
+        dirtyRegion.reset(width, height);
+        addOccluders(dirtyRegion);
+
+        // Old positions
+        addFloatingNumberBounds(dirtyRegion);
+        bubbles.addBounds(dirtyRegion);
+
+        bubbles.update(width, height, steps);
+        placeFloatingNumbers(width, height);
+
+        // New positions
+        addFloatingNumberBounds(dirtyRegion);
+        bubbles.addBounds(dirtyRegion);
+
+        dirtyRegion.removeOccluded();
+        dirtyRegion.paintImmediately(this);
+
+        if (event.shouldCommit()) {
+            event.steps = steps;
+            event.dirtyRects = dirtyRegion.getCount();
+            event.dirtyArea = dirtyRegion.getArea();
+            event.commit();
+        }
+        GameMonitor.shared().frame(System.nanoTime() - start);
+    }
+
+    DirtyRegion getDirtyRegion() {
+        return dirtyRegion;
+    }
+
+    // The widgets of the content and the scroll bar, which the animation does not show
+    // through, so that moving it never has to repaint them
+    private void addOccluders(DirtyRegion region) {
+        JViewport viewport = scrollPane.getViewport();
+        int vx1 = scrollPane.getX() + viewport.getX();
+        int vy1 = scrollPane.getY() + viewport.getY();
+        int vx2 = vx1 + viewport.getWidth();
+        int vy2 = vy1 + viewport.getHeight();
+        // The content's position in the viewport is negative once it is scrolled
+        int mx = vx1 + mainPanel.getX();
+        int my = vy1 + mainPanel.getY();
+        for (int i = 0; i < mainPanel.getComponentCount(); i++) {
+            Component c = mainPanel.getComponent(i);
+            if (!c.isVisible() || c instanceof Box.Filler) {
+                continue;
+            }
+            int x1 = Math.max(vx1, mx + c.getX());
+            int y1 = Math.max(vy1, my + c.getY());
+            int x2 = Math.min(vx2, mx + c.getX() + c.getWidth());
+            int y2 = Math.min(vy2, my + c.getY() + c.getHeight());
+            if (x1 < x2 && y1 < y2) {
+                region.addOccluder(x1, y1, x2 - x1, y2 - y1);
+            }
+        }
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        if (bar.isVisible()) {
+            region.addOccluder(scrollPane.getX() + bar.getX(), scrollPane.getY() + bar.getY(),
+                    bar.getWidth(), bar.getHeight());
+        }
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+        // The background layer is opaque and covers the whole panel, so there is
+        // no need to let the UI delegate fill the background first
+        GameEvents.Paint event = paintEvent;
+        event.begin();
         Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        // Without a clip getClipBounds(r) leaves r as it is: the whole panel
+        Rectangle clip = paintClip;
+        clip.setBounds(0, 0, getWidth(), getHeight());
+        g2d.getClipBounds(clip);
+        int clipWidth = clip.width;
+        int clipHeight = clip.height;
+        paintBackdrop(g2d, clip.x, clip.y, clip.width, clip.height);
 
-        // Draw gradient background with more vibrant colors
-        GradientPaint gradient = new GradientPaint(
-            0, 0, new Color(0x0A192F),
-            getWidth(), getHeight(), new Color(0x112240)
-        );
-        g2d.setPaint(gradient);
-        g2d.fillRect(0, 0, getWidth(), getHeight());
+        if (!firstFramePainted) {
+            firstFramePainted = true;
+            SwingUtilities.invokeLater(this::afterFirstFrame);
+        }
+        if (event.shouldCommit()) {
+            event.clipWidth = clipWidth;
+            event.clipHeight = clipHeight;
+            event.commit();
+        }
+    }
 
-        // Draw decorative elements with enhanced effects
-        drawDecorativeElements(g2d);
+    /**
+     * Paints the last tick's dirty region into g without going through Swing, as
+     * paintImmediately would on screen; the widgets lie outside it. For offscreen
+     * harnesses, since paintImmediately does nothing while the form is not showing.
+     */
+    void paintDirtyRegion(Graphics2D g2d) {
+        Rectangle r = paintClip;
+        for (int i = 0; i < dirtyRegion.getCount(); i++) {
+            dirtyRegion.getRect(i, r);
+            paintBackdrop(g2d, r.x, r.y, r.width, r.height);
+        }
+    }
+
+    // Everything the form itself paints inside the rectangle, without touching the clip:
+    // the background layer, the animation between the widgets and the content's overlay
+    private void paintBackdrop(Graphics2D g2d, int x, int y, int w, int h) {
+        WidgetSkins.drawClipped(g2d, getBackgroundLayer(), 0, 0, x, y, w, h);
+
+        renderQuality.applyHints(g2d);
+
+        // The animation only shows between the widgets, as tick() repaints it
+        DirtyRegion visible = paintRegion;
+        visible.reset(getWidth(), getHeight());
+        addOccluders(visible);
+        visible.add(x, y, w, h);
+        visible.removeOccluded();
+        Rectangle piece = paintPiece;
+        for (int i = 0; i < visible.getCount(); i++) {
+            visible.getRect(i, piece);
+            // Draw decorative elements with enhanced effects
+            drawDecorativeElements(g2d, piece.x, piece.y, piece.width, piece.height);
+            bubbles.draw(g2d, piece.x, piece.y, piece.width, piece.height);
+        }
 
-        // Draw bubbles with glow effect
-        for (Bubble bubble : bubbles) {
-            // Draw glow
-            g2d.setColor(new Color(ACCENT_COLOR.getRed(), ACCENT_COLOR.getGreen(), ACCENT_COLOR.getBlue(), 50));
-            g2d.fill(new Ellipse2D.Float(bubble.x - 5, bubble.y - 5, bubble.size + 10, bubble.size + 10));
-            bubble.draw(g2d);
+        // Draw the content's semi-transparent background over the part of it in view
+        JViewport viewport = scrollPane.getViewport();
+        int vx = scrollPane.getX() + viewport.getX();
+        int vy = scrollPane.getY() + viewport.getY();
+        int x1 = Math.max(Math.max(x, vx), vx + mainPanel.getX());
+        int y1 = Math.max(Math.max(y, vy), vy + mainPanel.getY());
+        int x2 = Math.min(Math.min(x + w, vx + viewport.getWidth()), vx + mainPanel.getX() + mainPanel.getWidth());
+        int y2 = Math.min(Math.min(y + h, vy + viewport.getHeight()), vy + mainPanel.getY() + mainPanel.getHeight());
+        BufferedImage tile = getOverlayTile();
+        for (int ty = y1; ty < y2; ty += OVERLAY_TILE) {
+            for (int tx = x1; tx < x2; tx += OVERLAY_TILE) {
+                WidgetSkins.drawClipped(g2d, tile, tx, ty, x1, y1, x2 - x1, y2 - y1);
+            }
         }
     }
 
-    private void drawDecorativeElements(Graphics2D g2d) {
-        // Draw floating numbers with glow effect
-        g2d.setFont(new Font("Arial", Font.BOLD, 24));
-        for (int i = 0; i < 10; i++) {
-            float x = (float) (Math.random() * getWidth());
-            float y = (float) (Math.random() * getHeight());
-            float size = (float) (Math.random() * 20 + 10);
-            float alpha = (float) (Math.random() * 0.15 + 0.05);
-            
-            // Draw glow
-            g2d.setColor(new Color(255, 255, 255, (int)(alpha * 255)));
-            g2d.drawString(String.valueOf((int)(Math.random() * 100)), x + 1, y + 1);
-            g2d.drawString(String.valueOf((int)(Math.random() * 100)), x - 1, y - 1);
-            
-            // Draw main text
-            g2d.setColor(new Color(255, 255, 255, (int)(alpha * 255)));
-            g2d.drawString(String.valueOf((int)(Math.random() * 100)), x, y);
+    private static BufferedImage getOverlayTile() {
+        if (overlayTile == null) {
+            BufferedImage tile = new BufferedImage(OVERLAY_TILE, OVERLAY_TILE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = tile.createGraphics();
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.setColor(PANEL_OVERLAY_COLOR);
+            g2d.fillRect(0, 0, OVERLAY_TILE, OVERLAY_TILE);
+            g2d.dispose();
+            overlayTile = tile;
         }
+        return overlayTile;
+    }
+
+    void drawBubbles(Graphics2D g2d) {
+        bubbles.draw(g2d, 0, 0, getWidth(), getHeight());
+    }
+
+    private BufferedImage getBackgroundLayer() {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (backgroundLayer == null || backgroundLayer.getWidth() != width || backgroundLayer.getHeight() != height) {
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            BufferedImage layer = config != null
+                ? config.createCompatibleImage(width, height, Transparency.OPAQUE)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = layer.createGraphics();
+            paintBackgroundLayer(g2d, width, height);
+            g2d.dispose();
+            backgroundLayer = layer;
+        }
+        return backgroundLayer;
+    }
+
+    private static void paintBackgroundLayer(Graphics2D g2d, int width, int height) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+
+        // Draw gradient background with more vibrant colors
+        GradientPaint gradient = new GradientPaint(
+            0, 0, PRIMARY_COLOR,
+            width, height, SECONDARY_COLOR
+        );
+        g2d.setPaint(gradient);
+        g2d.fillRect(0, 0, width, height);
 
         // Draw grid lines with gradient
         g2d.setStroke(new BasicStroke(1));
-        for (int i = 0; i < getWidth(); i += 30) {
+        for (int i = 0; i < width; i += 30) {
             float alpha = (float) (Math.sin(i * 0.1) * 0.1 + 0.1);
             g2d.setColor(new Color(255, 255, 255, (int)(alpha * 255)));
-            g2d.drawLine(i, 0, i, getHeight());
+            g2d.drawLine(i, 0, i, height);
         }
-        for (int i = 0; i < getHeight(); i += 30) {
+        for (int i = 0; i < height; i += 30) {
             float alpha = (float) (Math.cos(i * 0.1) * 0.1 + 0.1);
             g2d.setColor(new Color(255, 255, 255, (int)(alpha * 255)));
-            g2d.drawLine(0, i, getWidth(), i);
+            g2d.drawLine(0, i, width, i);
         }
     }
 
+    void drawDecorativeElements(Graphics2D g2d) {
+        drawDecorativeElements(g2d, 0, 0, getWidth(), getHeight());
+    }
+
+    // The floating numbers, as far as they lie inside the rectangle
+    private void drawDecorativeElements(Graphics2D g2d, int x, int y, int w, int h) {
+        // Draw floating numbers with glow effect
+        if (!numbersPlaced) {
+            return;
+        }
+        BufferedImage[] sprites = getNumberSprites();
+        Composite oldComposite = g2d.getComposite();
+        for (int i = 0; i < activeNumbers; i++) {
+            g2d.setComposite(FLOATING_NUMBER_ALPHAS[numberAlpha[i]]);
+            WidgetSkins.drawClipped(g2d, sprites[numberValue[i]], numberX[i], numberY[i], x, y, w, h);
+        }
+        g2d.setComposite(oldComposite);
+    }
+
+    // The numbers jump to new random spots every frame
+    private void placeFloatingNumbers(int width, int height) {
+        BufferedImage[] sprites = getNumberSprites();
+        for (int i = 0; i < FLOATING_NUMBERS; i++) {
+            numberX[i] = (int) (numbersRandom.nextFloat() * width) - 1;
+            numberY[i] = (int) (numbersRandom.nextFloat() * height) - 1 - numberSpriteAscent;
+            numberValue[i] = numbersRandom.nextInt(sprites.length);
+            numberAlpha[i] = numbersRandom.nextInt(FLOATING_NUMBER_ALPHAS.length);
+        }
+        numbersPlaced = true;
+    }
+
+    private void addFloatingNumberBounds(DirtyRegion region) {
+        if (!numbersPlaced) {
+            return;
+        }
+        BufferedImage[] sprites = getNumberSprites();
+        for (int i = 0; i < activeNumbers; i++) {
+            BufferedImage sprite = sprites[numberValue[i]];
+            region.add(numberX[i], numberY[i], sprite.getWidth(), sprite.getHeight());
+        }
+    }
+
+    // Numbers 0-99 in white, with the one-pixel glow offsets baked in
+    private static BufferedImage[] getNumberSprites() {
+        if (numberSprites == null) {
+            BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D measure = scratch.createGraphics();
+            FontMetrics metrics = measure.getFontMetrics(FLOATING_NUMBER_FONT);
+            measure.dispose();
+
+            BufferedImage[] sprites = new BufferedImage[100];
+            for (int n = 0; n < sprites.length; n++) {
+                String text = String.valueOf(n);
+                BufferedImage sprite = new BufferedImage(metrics.stringWidth(text) + 2, metrics.getHeight() + 2,
+                        BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g2d = sprite.createGraphics();
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2d.setFont(FLOATING_NUMBER_FONT);
+                g2d.setColor(Color.WHITE);
+                int baseline = metrics.getAscent() + 1;
+                g2d.drawString(text, 2, baseline + 1);
+                g2d.drawString(text, 0, baseline - 1);
+                g2d.drawString(text, 1, baseline);
+                g2d.dispose();
+                sprites[n] = sprite;
+            }
+            numberSpriteAscent = metrics.getAscent();
+            numberSprites = sprites;
+        }
+        return numberSprites;
+    }
+
     private JPanel createTitlePanel() {
         JPanel panel = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                
-                // Draw glowing effect
-                for (int i = 5; i > 0; i--) {
-                    float alpha = 0.1f - (i * 0.02f);
-                    g2d.setColor(new Color(ACCENT_COLOR.getRed(), ACCENT_COLOR.getGreen(), ACCENT_COLOR.getBlue(), (int)(alpha * 255)));
-                    g2d.fillRoundRect(i, i, getWidth() - 2*i, getHeight() - 2*i, 20, 20);
-                }
+                TITLE_GLOW.draw((Graphics2D) g, 0, 0, getWidth(), getHeight());
             }
         };
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
@@ -276,7 +575,7 @@ public class GuessingGameForm extends JPanel {
         titleLabel.setForeground(TEXT_COLOR);
         titleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         
-        JLabel subtitleLabel = new JLabel("Guess a number between 1 and 100");
+        subtitleLabel = new JLabel("Guess a number between " + gameMin + " and " + gameMax);
         subtitleLabel.setFont(new Font("Arial", Font.PLAIN, 18));
         subtitleLabel.setForeground(SUBTEXT_COLOR);
         subtitleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -299,8 +598,7 @@ public class GuessingGameForm extends JPanel {
         ));
         panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 80));
         
-        String[] difficulties = {"Easy", "Medium", "Hard"};
-        difficultyCombo = new JComboBox<>(difficulties);
+        difficultyCombo = new JComboBox<>(DIFFICULTY_NAMES);
         difficultyCombo.setSelectedIndex(1);
         difficultyCombo.setFont(new Font("Arial", Font.BOLD, 14));
         difficultyCombo.setBackground(SECONDARY_COLOR);
@@ -324,11 +622,7 @@ public class GuessingGameForm extends JPanel {
         
         difficultyCombo.addItemListener(e -> {
             if (e.getStateChange() == ItemEvent.SELECTED) {
-                switch (difficultyCombo.getSelectedIndex()) {
-                    case 0: maxAttempts = MAX_ATTEMPTS_EASY; break;
-                    case 1: maxAttempts = MAX_ATTEMPTS_MEDIUM; break;
-                    case 2: maxAttempts = MAX_ATTEMPTS_HARD; break;
-                }
+                maxAttempts = GameEngine.maxAttempts(difficultyCombo.getSelectedIndex(), gameMin, gameMax);
                 updateAttempts(0);
             }
         });
@@ -383,37 +677,33 @@ public class GuessingGameForm extends JPanel {
 
     private JButton createStyledButton(String text, Color color) {
         JButton button = new JButton(text) {
+            // One image per state (normal, rollover, pressed) at the current size
+            private final BufferedImage[] skins = new BufferedImage[3];
+            private int skinWidth;
+            private int skinHeight;
+            private double skinScale;
+            private int skinVersion = -1;
+
             @Override
             protected void paintComponent(Graphics g) {
                 Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                
-                // Draw shadow
-                g2d.setColor(new Color(0, 0, 0, 50));
-                g2d.fillRoundRect(2, 2, getWidth() - 4, getHeight() - 4, 10, 10);
-                
-                // Draw button with gradient
-                if (getModel().isPressed()) {
-                    g2d.setColor(color.darker());
-                } else if (getModel().isRollover()) {
-                    GradientPaint gradient = new GradientPaint(
-                        0, 0, color,
-                        0, getHeight(), color.brighter()
-                    );
-                    g2d.setPaint(gradient);
-                } else {
-                    GradientPaint gradient = new GradientPaint(
-                        0, 0, color.darker(),
-                        0, getHeight(), color
-                    );
-                    g2d.setPaint(gradient);
+                double scale = WidgetSkins.scaleOf(g2d);
+                if (skinWidth != getWidth() || skinHeight != getHeight() || skinScale != scale
+                        || skinVersion != WidgetSkins.version()) {
+                    java.util.Arrays.fill(skins, null);
+                    skinWidth = getWidth();
+                    skinHeight = getHeight();
+                    skinScale = scale;
+                    skinVersion = WidgetSkins.version();
+                }
+
+                int state = getModel().isPressed() ? 2 : getModel().isRollover() ? 1 : 0;
+                if (skins[state] == null) {
+                    skins[state] = WidgetSkins.createImage((g2, width, height) -> paintButton(g2, width, height, color, state),
+                            skinWidth, skinHeight, scale);
                 }
-                g2d.fillRoundRect(0, 0, getWidth() - 2, getHeight() - 2, 10, 10);
-                
-                // Draw border
-                g2d.setColor(new Color(255, 255, 255, 50));
-                g2d.drawRoundRect(0, 0, getWidth() - 2, getHeight() - 2, 10, 10);
-                
+                g2d.drawImage(skins[state], 0, 0, skinWidth, skinHeight, null);
+
                 super.paintComponent(g);
             }
         };
@@ -428,6 +718,34 @@ public class GuessingGameForm extends JPanel {
         return button;
     }
 
+    private static void paintButton(Graphics2D g2d, int width, int height, Color color, int state) {
+        // Draw shadow
+        g2d.setColor(new Color(0, 0, 0, 50));
+        g2d.fillRoundRect(2, 2, width - 4, height - 4, 10, 10);
+
+        // Draw button with gradient
+        if (state == 2) {
+            g2d.setColor(color.darker());
+        } else if (state == 1) {
+            GradientPaint gradient = new GradientPaint(
+                0, 0, color,
+                0, height, color.brighter()
+            );
+            g2d.setPaint(gradient);
+        } else {
+            GradientPaint gradient = new GradientPaint(
+                0, 0, color.darker(),
+                0, height, color
+            );
+            g2d.setPaint(gradient);
+        }
+        g2d.fillRoundRect(0, 0, width - 2, height - 2, 10, 10);
+
+        // Draw border
+        g2d.setColor(new Color(255, 255, 255, 50));
+        g2d.drawRoundRect(0, 0, width - 2, height - 2, 10, 10);
+    }
+
     private JPanel createFeedbackPanel() {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
@@ -459,12 +777,11 @@ public class GuessingGameForm extends JPanel {
             @Override
             protected void paintComponent(Graphics g) {
                 Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g2d.setColor(SECONDARY_COLOR);
-                g2d.fillRoundRect(0, 0, getWidth(), getHeight(), 10, 10);
-                g2d.setColor(ACCENT_COLOR);
+                PROGRESS_TRACK.draw(g2d, 0, 0, getWidth(), getHeight());
                 int width = (int) ((getValue() / (double) getMaximum()) * getWidth());
-                g2d.fillRoundRect(0, 0, width, getHeight(), 10, 10);
+                if (width > 0) {
+                    PROGRESS_FILL.draw(g2d, 0, 0, width, getHeight());
+                }
             }
         };
         attemptsProgress.setStringPainted(true);
@@ -488,10 +805,7 @@ public class GuessingGameForm extends JPanel {
         JPanel panel = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g2d.setColor(new Color(0, 0, 0, 150));
-                g2d.fillRoundRect(0, 0, getWidth(), getHeight(), 15, 15);
+                STATS_GLASS.draw((Graphics2D) g, 0, 0, getWidth(), getHeight());
             }
         };
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
@@ -500,7 +814,7 @@ public class GuessingGameForm extends JPanel {
             BorderFactory.createLineBorder(ACCENT_COLOR, 2, true),
             BorderFactory.createEmptyBorder(15, 20, 15, 20)
         ));
-        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 150));
+        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 175));
         
         JLabel statsTitle = new JLabel("Statistics");
         statsTitle.setFont(new Font("Arial", Font.BOLD, 18));
@@ -522,6 +836,11 @@ public class GuessingGameForm extends JPanel {
         gamesPlayedLabel.setForeground(SUBTEXT_COLOR);
         gamesPlayedLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         
+        rankLabel = new JLabel("Rank: -");
+        rankLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+        rankLabel.setForeground(SUBTEXT_COLOR);
+        rankLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
         panel.add(statsTitle);
         panel.add(Box.createRigidArea(new Dimension(0, 15)));
         panel.add(highScoreLabel);
@@ -529,10 +848,22 @@ public class GuessingGameForm extends JPanel {
         panel.add(avgAttemptsLabel);
         panel.add(Box.createRigidArea(new Dimension(0, 8)));
         panel.add(gamesPlayedLabel);
+        panel.add(Box.createRigidArea(new Dimension(0, 8)));
+        panel.add(rankLabel);
         
         return panel;
     }
 
+    private void createHintControls() {
+        hintButton = createStyledButton("Get Hint", HINT_COLOR);
+        hintButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        
+        hintLabel = new JLabel("");
+        hintLabel.setFont(new Font("Arial", Font.ITALIC, 14));
+        hintLabel.setForeground(SUBTEXT_COLOR);
+        hintLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+    }
+
     private JPanel createHintPanel() {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
@@ -544,14 +875,6 @@ public class GuessingGameForm extends JPanel {
         ));
         panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 100));
         
-        hintButton = createStyledButton("Get Hint", HINT_COLOR);
-        hintButton.setAlignmentX(Component.CENTER_ALIGNMENT);
-        
-        hintLabel = new JLabel("");
-        hintLabel.setFont(new Font("Arial", Font.ITALIC, 14));
-        hintLabel.setForeground(SUBTEXT_COLOR);
-        hintLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-        
         panel.add(hintButton);
         panel.add(Box.createRigidArea(new Dimension(0, 10)));
         panel.add(hintLabel);
@@ -559,10 +882,18 @@ public class GuessingGameForm extends JPanel {
         return panel;
     }
 
-    public void updateRange(int min, int max) {
+    public void updateRange(long min, long max) {
         rangeLabel.setText("Range: " + min + " - " + max);
     }
 
+    /** Sets the range new games are played in; the attempt limits follow its size. */
+    public void setGameRange(long min, long max) {
+        gameMin = min;
+        gameMax = max;
+        subtitleLabel.setText("Guess a number between " + min + " and " + max);
+        maxAttempts = GameEngine.maxAttempts(getDifficulty(), min, max);
+    }
+
     public void updateAttempts(int attempts) {
         attemptsLabel.setText("Attempts: " + attempts + "/" + maxAttempts);
         attemptsProgress.setValue(attempts);
@@ -570,25 +901,77 @@ public class GuessingGameForm extends JPanel {
     }
 
     public void setResultText(String text, boolean isError) {
+        showResultText(text, isError);
+        if (!text.isEmpty()) {
+            playSound(isError);
+        }
+    }
+
+    /** Shows a result without its tone, for callers that queue the tone themselves. */
+    public void showResultText(String text, boolean isError) {
         resultLabel.setText(text);
         resultLabel.setForeground(isError ? ERROR_COLOR : SUCCESS_COLOR);
-        playSound(isError);
     }
 
-    public void updateStats(int attempts) {
-        gamesPlayed++;
-        totalAttempts += attempts;
-        if (attempts < highScore) {
-            highScore = attempts;
+    /** Shows the statistics panel from a snapshot, with a per-difficulty breakdown as its tooltip. */
+    public void showStatistics(GameStatistics.Snapshot stats) {
+        if (statsPanel == null) {
+            pendingStatistics = () -> showStatistics(stats);
+            return;
         }
-        
-        highScoreLabel.setText("Best Score: " + (highScore == Integer.MAX_VALUE ? "-" : highScore));
-        avgAttemptsLabel.setText(String.format("Average Attempts: %.1f", 
-            (double) totalAttempts / gamesPlayed));
-        gamesPlayedLabel.setText("Games Played: " + gamesPlayed);
+        GameStatistics.Counts total = stats.getTotal();
+        showStatistics(total.getWins(), total.getAttempts(), stats.getBestAttempts());
+
+        StringBuilder tip = new StringBuilder("<html>");
+        for (int d = 0; d < GameStatistics.DIFFICULTIES; d++) {
+            GameStatistics.Counts counts = stats.getTotal(d);
+            tip.append(DIFFICULTY_NAMES[d]).append(": ").append(counts.getWins()).append(" won, ")
+                .append(counts.getLosses()).append(" lost");
+            if (counts.getWins() > 0) {
+                tip.append(", median ").append(stats.getPercentile(d, 50))
+                    .append(", 90% within ").append(stats.getPercentile(d, 90));
+            }
+            tip.append("<br>");
+        }
+        long hour = 0;
+        long day = 0;
+        for (int d = 0; d < GameStatistics.DIFFICULTIES; d++) {
+            hour += stats.getLastHour(d).getGames();
+            day += stats.getLastDay(d).getGames();
+        }
+        tip.append("Last hour: ").append(hour).append(" games, last day: ").append(day).append(" games</html>");
+        statsPanel.setToolTipText(tip.toString());
+    }
+
+    /** Shows totals without a breakdown, e.g. straight from the result log's summary. */
+    public void showStatistics(long wins, long attempts, int best) {
+        if (wins == 0) {
+            return;
+        }
+        if (statsPanel == null) {
+            pendingStatistics = () -> showStatistics(wins, attempts, best);
+            return;
+        }
+        highScoreLabel.setText("Best Score: " + best);
+        avgAttemptsLabel.setText(String.format("Average Attempts: %.1f", (double) attempts / wins));
+        gamesPlayedLabel.setText("Games Played: " + wins);
+    }
+
+    /** Shows the player's leaderboard rank at a difficulty; rank 0 means no score there yet. */
+    public void showRank(int difficulty, long rank, int players, Leaderboard.Score best) {
+        addDeferredPanels();
+        if (rank == 0) {
+            rankLabel.setText("Rank: - (" + DIFFICULTY_NAMES[difficulty] + ")");
+            rankLabel.setToolTipText(null);
+            return;
+        }
+        rankLabel.setText("Rank: #" + rank + " of " + players + " (" + DIFFICULTY_NAMES[difficulty] + ")");
+        rankLabel.setToolTipText(String.format("Your best: %d attempts in %.2f s",
+            best.getAttempts(), best.getDurationMillis() / 1000.0));
     }
 
     public void setHint(String hint) {
+        addDeferredPanels();
         hintLabel.setText(hint);
     }
 
@@ -598,34 +981,32 @@ public class GuessingGameForm extends JPanel {
         guessField.requestFocus();
     }
 
-    private void playSound(boolean isError) {
-        try {
-            byte[] soundData = new byte[1];
-            AudioFormat format = new AudioFormat(44100, 8, 1, true, true);
-            DataLine.Info info = new DataLine.Info(Clip.class, format);
-            Clip clip = (Clip) AudioSystem.getLine(info);
-            
-            if (isError) {
-                // Error sound (lower pitch)
-                for (int i = 0; i < soundData.length; i++) {
-                    soundData[i] = (byte) (Math.sin(i / 10.0) * 127);
-                }
-            } else {
-                // Success sound (higher pitch)
-                for (int i = 0; i < soundData.length; i++) {
-                    soundData[i] = (byte) (Math.sin(i / 5.0) * 127);
-                }
-            }
-            
-            ByteArrayInputStream bais = new ByteArrayInputStream(soundData);
-            AudioInputStream ais = new AudioInputStream(bais, format, soundData.length);
-            clip.open(ais);
-            clip.start();
-        } catch (Exception e) {
-            // Ignore sound errors
+    /** Queues the success or error tone. Touches no components, so any thread may call it. */
+    public void playSound(boolean isError) {
+        // Tones are mixed on the audio engine's own thread; this only queues them
+        GameEvents.Sound event = new GameEvents.Sound();
+        event.begin();
+        AudioEngine.shared().play(isError ? AudioEngine.ERROR : AudioEngine.SUCCESS);
+        if (event.shouldCommit()) {
+            event.error = isError;
+            event.commit();
         }
     }
 
+    public void stopAnimation() {
+        animationWanted = false;
+        animationScheduler.stop();
+    }
+
+    public void startAnimation() {
+        animationWanted = true;
+        animationScheduler.start();
+    }
+
+    public FrameScheduler getAnimationScheduler() {
+        return animationScheduler;
+    }
+
     // Getters
     public JPanel getMainPanel() {
         return mainPanel;
@@ -658,4 +1039,8 @@ public class GuessingGameForm extends JPanel {
     public int getMaxAttempts() {
         return maxAttempts;
     }
+
+    public int getDifficulty() {
+        return difficultyCombo.getSelectedIndex();
+    }
 }
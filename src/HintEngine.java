@@ -0,0 +1,285 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Chooses the hint that tells the player the most about the secret.
+ *
+ * Every candidate hint splits the remaining range [min, max] into classes: halves,
+ * quarters, remainders modulo 2, 3 and 4, and whether the digit sum is a multiple
+ * of 3. Telling the player the secret's class is worth the expected information of
+ * the split, in bits. Each difficulty has a budget of bits per hint, and the best
+ * candidate within the budget wins; ties go to the earlier candidate in the list,
+ * so ranges are preferred over remainders. A split with a class of fewer than two
+ * numbers is never used, so a hint cannot give the answer away; when nothing
+ * qualifies the player is told they are close.
+ *
+ * A remainder the game has already given away is worth nothing the second time,
+ * and only what is left of it counts when a coarser class is known: the remainder
+ * modulo 4 after parity, modulo 3 after the digit sum. The caller passes the
+ * classes revealed so far as a mask (see revealedBy), so a game that has had its
+ * remainder falls back to hints that shrink the range.
+ *
+ * Which hint is best depends only on the shape of the range (its size and where
+ * it starts modulo 3) and on what has been revealed, not on the secret, so the
+ * choice is memoized in a small direct-mapped table shared by all sessions. Hint
+ * codes are packed ints: the hint type from GameEngine in the low byte and the
+ * secret's class above it.
+ */
+public class HintEngine {
+    // Bits a single hint may reveal, per difficulty: quarters on Easy, thirds on Medium, halves on Hard
+    private static final double[] BUDGET_BITS = {2.0, 1.6, 1.0};
+    private static final int[] CANDIDATES = {
+        GameEngine.HINT_LOWER_HALF, GameEngine.HINT_QUARTER, GameEngine.HINT_EVEN,
+        GameEngine.HINT_MOD_3, GameEngine.HINT_MOD_4, GameEngine.HINT_DIGIT_SUM_3
+    };
+    // Above this many numbers every split is within 1e-12 bits of even
+    private static final long EXACT_LIMIT = 1L << 50;
+    private static final int CACHE_SIZE = 4096;
+
+    // Classes a game's hints have revealed, as passed to hint() and choose()
+    public static final int REVEALED_PARITY = 1;
+    public static final int REVEALED_MOD_3 = 2;
+    public static final int REVEALED_MOD_4 = 4;
+    public static final int REVEALED_DIGIT_SUM_3 = 8;
+
+    // Each entry packs count << 12 | revealed << 8 | phase << 6 | difficulty << 4 | candidate index; 0 is empty
+    private final AtomicLongArray cache = new AtomicLongArray(CACHE_SIZE);
+
+    public static int type(int hint) {
+        return hint & 0xFF;
+    }
+
+    /** The secret's class: the quarter, the remainder, or 0 for a multiple of 3 digit sum. */
+    public static int value(int hint) {
+        return hint >>> 8;
+    }
+
+    /** The classes a hint reveals, including the coarser ones it implies; 0 for range hints. */
+    public static int revealedBy(int hint) {
+        switch (type(hint)) {
+            case GameEngine.HINT_EVEN:
+            case GameEngine.HINT_ODD:
+                return REVEALED_PARITY;
+            case GameEngine.HINT_MOD_3:
+                return REVEALED_MOD_3 | REVEALED_DIGIT_SUM_3;
+            case GameEngine.HINT_MOD_4:
+                return REVEALED_MOD_4 | REVEALED_PARITY;
+            case GameEngine.HINT_DIGIT_SUM_3:
+                return REVEALED_DIGIT_SUM_3;
+            default:
+                return 0;
+        }
+    }
+
+    /** The best hint about secret within [min, max] for the difficulty, given the classes already revealed. */
+    public int hint(long min, long max, long secret, int difficulty, int revealed) {
+        int type = choose(min, max, difficulty, revealed);
+        switch (type) {
+            case GameEngine.HINT_LOWER_HALF:
+                return secret < GameEngine.midpoint(min, max) ? GameEngine.HINT_LOWER_HALF : GameEngine.HINT_UPPER_HALF;
+            case GameEngine.HINT_QUARTER:
+                return type | quarterOf(min, max, secret) << 8;
+            case GameEngine.HINT_EVEN:
+                return (secret & 1) == 0 ? GameEngine.HINT_EVEN : GameEngine.HINT_ODD;
+            case GameEngine.HINT_MOD_3:
+                return type | (int) Math.floorMod(secret, 3L) << 8;
+            case GameEngine.HINT_MOD_4:
+                return type | (int) Math.floorMod(secret, 4L) << 8;
+            case GameEngine.HINT_DIGIT_SUM_3:
+                // A number's digit sum has the same remainder modulo 3 as the number
+                return type | (secret % 3 == 0 ? 0 : 1) << 8;
+            default:
+                return type;
+        }
+    }
+
+    /** The hint type to give for a range, from the cache when possible. */
+    public int choose(long min, long max, int difficulty, int revealed) {
+        long span = max - min;
+        // Number of values, capped where the splits stop differing
+        long count = span >= 0 && span < EXACT_LIMIT ? span + 1 : EXACT_LIMIT;
+        int phase = (int) Math.floorMod(min, 3L);
+        long key = count << 12 | (long) revealed << 8 | (long) phase << 6 | (long) difficulty << 4;
+
+        int slot = (int) (mix(key) & (CACHE_SIZE - 1));
+        long entry = cache.get(slot);
+        if (entry != 0 && (entry & ~0xFL) == key) {
+            return candidate((int) (entry & 0xF));
+        }
+        int best = score(count, phase, revealed, BUDGET_BITS[difficulty]);
+        cache.set(slot, key | best);
+        return candidate(best);
+    }
+
+    /** Whether x lies in the class the hint names, for the range the hint was given in. */
+    public static boolean allows(int hint, long min, long max, long x) {
+        switch (type(hint)) {
+            case GameEngine.HINT_LOWER_HALF:
+                return x < GameEngine.midpoint(min, max);
+            case GameEngine.HINT_UPPER_HALF:
+                return x >= GameEngine.midpoint(min, max);
+            case GameEngine.HINT_QUARTER:
+                return quarterOf(min, max, x) == value(hint);
+            case GameEngine.HINT_EVEN:
+                return (x & 1) == 0;
+            case GameEngine.HINT_ODD:
+                return (x & 1) != 0;
+            case GameEngine.HINT_MOD_3:
+                return Math.floorMod(x, 3L) == value(hint);
+            case GameEngine.HINT_MOD_4:
+                return Math.floorMod(x, 4L) == value(hint);
+            case GameEngine.HINT_DIGIT_SUM_3:
+                return (x % 3 == 0) == (value(hint) == 0);
+            default:
+                return true;
+        }
+    }
+
+    /** The smallest number a hint given for [min, max] allows; min for anything but halves and quarters. */
+    public static long lowerBound(int hint, long min, long max) {
+        switch (type(hint)) {
+            case GameEngine.HINT_UPPER_HALF:
+                return GameEngine.midpoint(min, max);
+            case GameEngine.HINT_QUARTER:
+                return quarterStart(min, max, value(hint));
+            default:
+                return min;
+        }
+    }
+
+    /** The largest number a hint given for [min, max] allows; max for anything but halves and quarters. */
+    public static long upperBound(int hint, long min, long max) {
+        switch (type(hint)) {
+            case GameEngine.HINT_LOWER_HALF:
+                return GameEngine.midpoint(min, max) - 1;
+            case GameEngine.HINT_QUARTER:
+                return value(hint) == 3 ? max : quarterStart(min, max, value(hint) + 1) - 1;
+            default:
+                return max;
+        }
+    }
+
+    /** Which quarter of [min, max] x falls in, 0 to 3; the first quarters take the remainder. */
+    public static int quarterOf(long min, long max, long x) {
+        int q = 3;
+        while (q > 0 && Long.compareUnsigned(x - min, quarterStart(min, max, q) - min) < 0) {
+            q--;
+        }
+        return q;
+    }
+
+    /** The first number of quarter q (0 to 3) of [min, max]. */
+    public static long quarterStart(long min, long max, int q) {
+        long span = max - min;
+        // With span == -1 the range is all 2^64 values
+        long size = span == -1 ? 1L << 62 : (span + 1) >>> 2;
+        long extra = span == -1 ? 0 : (span + 1) & 3;
+        return min + q * size + Math.min(q, extra);
+    }
+
+    private static int candidate(int index) {
+        return index == CANDIDATES.length ? GameEngine.HINT_CLOSE : CANDIDATES[index];
+    }
+
+    // Index of the most informative candidate within budget, or CANDIDATES.length if none tells anything
+    private static int score(long count, int phase, int revealed, double budget) {
+        int best = CANDIDATES.length;
+        double bestBits = 1e-9;
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            double bits = newBits(CANDIDATES[i], count, phase, revealed);
+            if (bits <= budget + 1e-9 && bits > bestBits + 1e-9) {
+                best = i;
+                bestBits = bits;
+            }
+        }
+        return best;
+    }
+
+    // Expected information the candidate adds to the classes already revealed
+    private static double newBits(int type, long count, int phase, int revealed) {
+        switch (type) {
+            case GameEngine.HINT_EVEN:
+                return (revealed & REVEALED_PARITY) != 0 ? 0 : bits(type, count, phase);
+            case GameEngine.HINT_MOD_3:
+                if ((revealed & REVEALED_MOD_3) != 0) {
+                    return 0;
+                }
+                if ((revealed & REVEALED_DIGIT_SUM_3) != 0) {
+                    return Math.max(0, bits(type, count, phase) - bits(GameEngine.HINT_DIGIT_SUM_3, count, phase));
+                }
+                return bits(type, count, phase);
+            case GameEngine.HINT_MOD_4:
+                if ((revealed & REVEALED_MOD_4) != 0) {
+                    return 0;
+                }
+                if ((revealed & REVEALED_PARITY) != 0) {
+                    return Math.max(0, bits(type, count, phase) - bits(GameEngine.HINT_EVEN, count, phase));
+                }
+                return bits(type, count, phase);
+            case GameEngine.HINT_DIGIT_SUM_3:
+                return (revealed & REVEALED_DIGIT_SUM_3) != 0 ? 0 : bits(type, count, phase);
+            default:
+                // Ranges are cut afresh from what is left, so they always count in full
+                return bits(type, count, phase);
+        }
+    }
+
+    // Expected information of the candidate's split of count numbers starting at phase mod 3
+    private static double bits(int type, long count, int phase) {
+        switch (type) {
+            case GameEngine.HINT_LOWER_HALF:
+            case GameEngine.HINT_EVEN:
+                // Halves split as evenly as parity does
+                return evenSplit(count, 2);
+            case GameEngine.HINT_QUARTER:
+                return evenSplit(count, 4);
+            case GameEngine.HINT_MOD_3:
+                return evenSplit(count, 3);
+            case GameEngine.HINT_MOD_4:
+                return evenSplit(count, 4);
+            case GameEngine.HINT_DIGIT_SUM_3:
+                long first = (3 - phase) % 3;
+                long multiples = count > first ? (count - 1 - first) / 3 + 1 : 0;
+                if (multiples < 2 || count - multiples < 2) {
+                    return 0;
+                }
+                return entropy(count, multiples, count - multiples);
+            default:
+                return 0;
+        }
+    }
+
+    // Entropy of count numbers split into classes as even as possible
+    private static double evenSplit(long count, int classes) {
+        if (count >= EXACT_LIMIT) {
+            return log2(classes);
+        }
+        long base = count / classes;
+        long extra = count % classes;
+        if (base < 2) {
+            return 0;
+        }
+        double sum = extra * plogp(base + 1) + (classes - extra) * plogp(base);
+        return log2(count) - sum / count;
+    }
+
+    private static double entropy(long count, long a, long b) {
+        if (count >= EXACT_LIMIT) {
+            // A third of all numbers are multiples of 3
+            return log2(3) - 2.0 / 3;
+        }
+        return log2(count) - (plogp(a) + plogp(b)) / count;
+    }
+
+    private static double plogp(long n) {
+        return n <= 1 ? 0 : n * log2(n);
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Feeds a GameJournal back through the game rules and checks the results.
+ *
+ * Every recorded event is applied to a fresh GameEngine: new games are dealt
+ * from their recorded seeds, so the secrets are the same, and each guess, hint
+ * and expiry must give the recorded result. Finished games are added up twice,
+ * once as recorded and once as replayed, into GameStatistics (the aggregate
+ * the statistics panel shows), and the two must agree. Games count when their
+ * GAME_OVER record is read, so a journal cut off by a crash still replays
+ * cleanly. A game counts at the difficulty its last guess or expiry was
+ * recorded with, as the statistics panel counts it.
+ *
+ * Usage: JournalReplay journal-file
+ * Exits with 1 if anything differs.
+ */
+public class JournalReplay {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_REPORTED = 10;
+
+    private final GameEngine engine;
+    // The difficulty each session's game was last played at
+    private final byte[] difficulty;
+    // How the replayed game ended: 0 not yet, 1 won, 2 lost, 3 matched by its GAME_OVER record
+    private final byte[] ended;
+    private final GameStatistics recorded = new GameStatistics();
+    private final GameStatistics replayed = new GameStatistics();
+    private final long[] eventsByType = new long[GameJournal.GAME_OVER + 1];
+    private long events;
+    private long unclassified;
+    private long mismatches;
+    private final StringBuilder report = new StringBuilder();
+
+    public JournalReplay(int capacity) {
+        engine = new GameEngine(capacity, 0);
+        difficulty = new byte[capacity];
+        ended = new byte[capacity];
+    }
+
+    /** Replays a whole journal file. */
+    public static JournalReplay replay(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(GameJournal.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading
+            }
+            if (header.hasRemaining() || header.getInt(0) != GameJournal.MAGIC) {
+                throw new IOException("Not a game journal: " + file);
+            }
+            if (header.getInt(4) != GameJournal.VERSION) {
+                throw new IOException("Unsupported journal version " + header.getInt(4) + ": " + file);
+            }
+            JournalReplay replay = new JournalReplay(header.getInt(8));
+            replay.replay(channel);
+            return replay;
+        }
+    }
+
+    /** Replays the records that follow the header. A record cut short at the end is ignored. */
+    public void replay(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (channel.read(buf) >= 0) {
+            buf.flip();
+            int pos = 0;
+            int end = buf.limit();
+            while (pos < end) {
+                int size = GameJournal.recordSize(buf.get(pos));
+                if (size == 0) {
+                    throw new IOException("Corrupt journal: record type " + buf.get(pos) + " after " + events + " events");
+                }
+                if (end - pos < size) {
+                    break;
+                }
+                apply(buf, pos);
+                pos += size;
+            }
+            buf.position(pos);
+            buf.compact();
+        }
+    }
+
+    private void apply(ByteBuffer buf, int pos) throws IOException {
+        int type = buf.get(pos);
+        int session = buf.getInt(pos + 1);
+        if (session < 0 || session >= ended.length) {
+            throw new IOException("Corrupt journal: session " + session + " after " + events + " events");
+        }
+        events++;
+        eventsByType[type]++;
+        switch (type) {
+            case GameJournal.NEW_GAME: {
+                int level = buf.get(pos + 5);
+                if (ended[session] == 1 || ended[session] == 2) {
+                    mismatch(session, "new game, but the last one ended without a game over record");
+                }
+                engine.newGame(session, level, buf.getLong(pos + 6), buf.getLong(pos + 14), buf.getLong(pos + 22));
+                difficulty[session] = (byte) level;
+                ended[session] = 0;
+                break;
+            }
+            case GameJournal.GUESS: {
+                long guess = buf.getLong(pos + 5);
+                int level = buf.get(pos + 13);
+                int maxAttempts = buf.getShort(pos + 14);
+                int expected = buf.get(pos + 16);
+                int outcome = engine.guess(session, guess, level, maxAttempts);
+                difficulty[session] = (byte) level;
+                if (outcome == GameEngine.CORRECT || outcome == GameEngine.LOST) {
+                    ended[session] = (byte) (outcome == GameEngine.CORRECT ? 1 : 2);
+                }
+                if (outcome != expected) {
+                    mismatch(session, "guess " + guess + " gave " + outcome + ", recorded " + expected);
+                }
+                break;
+            }
+            case GameJournal.HINT: {
+                int difficulty = buf.get(pos + 5);
+                int expected = buf.getInt(pos + 6);
+                int hint = engine.hint(session, difficulty);
+                if (hint != expected) {
+                    mismatch(session, "hint gave " + hint + ", recorded " + expected);
+                }
+                break;
+            }
+            case GameJournal.EXPIRE: {
+                int level = buf.get(pos + 5);
+                int maxAttempts = buf.getShort(pos + 6);
+                boolean expected = buf.get(pos + 8) != 0;
+                boolean expired = engine.expire(session, level, maxAttempts);
+                difficulty[session] = (byte) level;
+                if (expired) {
+                    ended[session] = 2;
+                }
+                if (expired != expected) {
+                    mismatch(session, "expiry gave " + expired + ", recorded " + expected);
+                }
+                break;
+            }
+            case GameJournal.GAME_OVER: {
+                int attempts = buf.getShort(pos + 5);
+                boolean won = buf.get(pos + 7) != 0;
+                int level = difficulty[session];
+                int replayedAttempts = engine.getAttempts(session);
+                boolean replayedEnd = ended[session] == 1 || ended[session] == 2;
+                if (level < GameEngine.EASY || level > GameEngine.HARD) {
+                    unclassified++;
+                } else {
+                    recorded.record(level, attempts, won, 0);
+                    if (replayedEnd) {
+                        replayed.record(level, replayedAttempts, ended[session] == 1, 0);
+                    }
+                }
+                if (ended[session] != (won ? 1 : 2) || replayedAttempts != attempts) {
+                    mismatch(session, "game over after " + attempts + (won ? " attempts, won" : " attempts, lost")
+                            + "; replayed " + replayedAttempts + " attempts, "
+                            + (replayedEnd ? (ended[session] == 1 ? "won" : "lost") : "not ended"));
+                }
+                ended[session] = 3;
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void mismatch(int session, String what) {
+        if (mismatches++ < MAX_REPORTED) {
+            report.append("  event ").append(events).append(", session ").append(session)
+                    .append(": ").append(what).append('\n');
+        }
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getEvents(int type) {
+        return eventsByType[type];
+    }
+
+    /** Events whose replayed result differed from the recorded one. */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    /** Finished games recorded with no known difficulty, left out of the statistics. */
+    public long getUnclassified() {
+        return unclassified;
+    }
+
+    public GameStatistics.Snapshot getRecorded() {
+        return recorded.snapshot(0);
+    }
+
+    public GameStatistics.Snapshot getReplayed() {
+        return replayed.snapshot(0);
+    }
+
+    /** Whether the recorded and replayed statistics are identical. */
+    public boolean statisticsMatch() {
+        GameStatistics.Snapshot a = getRecorded();
+        GameStatistics.Snapshot b = getReplayed();
+        for (int d = 0; d < GameStatistics.DIFFICULTIES; d++) {
+            GameStatistics.Counts x = a.getTotal(d);
+            GameStatistics.Counts y = b.getTotal(d);
+            if (x.getWins() != y.getWins() || x.getLosses() != y.getLosses() || x.getAttempts() != y.getAttempts()) {
+                return false;
+            }
+            for (int n = 0; n <= GameStatistics.MAX_TRACKED_ATTEMPTS; n++) {
+                if (a.getWinsWithAttempts(d, n) != b.getWinsWithAttempts(d, n)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: JournalReplay journal-file");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        JournalReplay replay = replay(new File(args[0]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d events in %.2f s (%.0f events/s): %d new games, %d guesses, %d hints, %d expiries, %d game overs%n",
+                replay.getEvents(), seconds, replay.getEvents() / seconds,
+                replay.getEvents(GameJournal.NEW_GAME), replay.getEvents(GameJournal.GUESS),
+                replay.getEvents(GameJournal.HINT), replay.getEvents(GameJournal.EXPIRE),
+                replay.getEvents(GameJournal.GAME_OVER));
+
+        String[] names = {"Easy", "Medium", "Hard"};
+        GameStatistics.Snapshot recorded = replay.getRecorded();
+        GameStatistics.Snapshot replayed = replay.getReplayed();
+        System.out.printf("%n%-7s %24s %24s%n", "level", "recorded won/lost/best", "replayed won/lost/best");
+        for (int d = 0; d < names.length; d++) {
+            System.out.printf("%-7s %24s %24s%n", names[d], summary(recorded, d), summary(replayed, d));
+        }
+        if (replay.getUnclassified() > 0) {
+            System.out.println(replay.getUnclassified() + " games had no known difficulty and are not counted");
+        }
+
+        boolean ok = replay.getMismatches() == 0 && replay.statisticsMatch();
+        if (replay.getMismatches() > 0) {
+            System.out.printf("%n%d mismatches:%n%s", replay.getMismatches(), replay.report);
+        }
+        if (!replay.statisticsMatch()) {
+            System.out.println("\nReplayed statistics differ from the recorded ones");
+        }
+        System.out.println(ok ? "\nReplay matches the journal" : "\nReplay does NOT match the journal");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static String summary(GameStatistics.Snapshot s, int difficulty) {
+        GameStatistics.Counts c = s.getTotal(difficulty);
+        return c.getWins() + "/" + c.getLosses() + "/" + s.getBestAttempts(difficulty);
+    }
+}
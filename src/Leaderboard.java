@@ -0,0 +1,379 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ranks players by their best game per difficulty: fewest attempts, then fastest time.
+ *
+ * Scores can be submitted from any number of threads without a global lock. Each
+ * player's best score is replaced inside ConcurrentHashMap.compute() for that
+ * player, which also updates the structures below, so one player's submits apply
+ * one at a time while other players' go ahead in parallel:
+ *
+ * - Ranks come from Fenwick trees of atomic counters: one over attempts, and one
+ *   per attempt count over the time in centiseconds (times past MAX_RANKED_MILLIS
+ *   share the last slot). A rank is two prefix sums, O(log n) however many
+ *   players there are, and players within the same centisecond share a rank.
+ * - The best TOP_CAPACITY scores are also kept in order in a skip list for top-K
+ *   queries; worse scores are trimmed off its end as better ones arrive.
+ *
+ * A query that runs while a player's score is being replaced may miss that one
+ * player: ranks can be one low and top() can lack the old and the new score for
+ * that moment. A replaced score never stays behind.
+ *
+ * With a file, the leaderboard loads it on a background thread (scores submitted
+ * meanwhile are merged in) and then writes a snapshot of every player's best
+ * whenever something changed, at most every SNAPSHOT_INTERVAL_MS, and on close.
+ */
+public class Leaderboard implements AutoCloseable {
+    public static final int TOP_CAPACITY = 1000;
+    public static final int MAX_RANKED_MILLIS = 163_830;
+
+    private static final int DIFFICULTIES = 3;
+    private static final int MAX_ATTEMPTS = 127;
+    private static final int TIME_SLOTS = MAX_RANKED_MILLIS / 10 + 1;
+    private static final int MAGIC = 0x474c4231; // "GLB1"
+    private static final long SNAPSHOT_INTERVAL_MS = 5000;
+
+    /** One player's best game at one difficulty. Ordered best first. */
+    public static final class Score implements Comparable<Score> {
+        private final String player;
+        private final int difficulty;
+        private final int attempts;
+        private final int durationMillis;
+        private final long finishedAt;
+
+        Score(String player, int difficulty, int attempts, int durationMillis, long finishedAt) {
+            this.player = player;
+            this.difficulty = difficulty;
+            this.attempts = attempts;
+            this.durationMillis = durationMillis;
+            this.finishedAt = finishedAt;
+        }
+
+        public String getPlayer() {
+            return player;
+        }
+
+        public int getDifficulty() {
+            return difficulty;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public int getDurationMillis() {
+            return durationMillis;
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        @Override
+        public int compareTo(Score other) {
+            if (attempts != other.attempts) {
+                return Integer.compare(attempts, other.attempts);
+            }
+            if (durationMillis != other.durationMillis) {
+                return Integer.compare(durationMillis, other.durationMillis);
+            }
+            // Earlier wins a tie; the name makes the order total
+            if (finishedAt != other.finishedAt) {
+                return Long.compare(finishedAt, other.finishedAt);
+            }
+            return player.compareTo(other.player);
+        }
+    }
+
+    private static final class Board {
+        final ConcurrentHashMap<String, Score> best = new ConcurrentHashMap<>();
+        final ConcurrentSkipListSet<Score> top = new ConcurrentSkipListSet<>();
+        final AtomicInteger topSize = new AtomicInteger();
+        // Fenwick tree over attempts, and per attempt count over time slots (1-based)
+        final AtomicLongArray byAttempts = new AtomicLongArray(MAX_ATTEMPTS + 1);
+        final AtomicReferenceArray<AtomicIntegerArray> byTime = new AtomicReferenceArray<>(MAX_ATTEMPTS + 1);
+    }
+
+    private final Board[] boards = new Board[DIFFICULTIES];
+    private final File file;
+    private final Thread snapshotter;
+    private final AtomicInteger changes = new AtomicInteger();
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private volatile boolean loaded;
+    private volatile boolean closed;
+    private volatile IOException loadError;
+
+    /** An in-memory leaderboard. */
+    public Leaderboard() {
+        this(null);
+    }
+
+    /** A leaderboard kept in file, loaded in the background; see isLoaded(). */
+    public Leaderboard(File file) {
+        for (int d = 0; d < DIFFICULTIES; d++) {
+            boards[d] = new Board();
+        }
+        this.file = file;
+        if (file == null) {
+            loaded = true;
+            loading.countDown();
+            snapshotter = null;
+            return;
+        }
+        snapshotter = new Thread(this::run, "leaderboard-snapshot");
+        snapshotter.setDaemon(true);
+        snapshotter.start();
+    }
+
+    /**
+     * Records a won game. Returns true if it is the player's new best at this
+     * difficulty, false if they already have one at least as good.
+     */
+    public boolean submit(String player, int difficulty, int attempts, int durationMillis, long finishedAt) {
+        if (attempts < 1 || attempts > MAX_ATTEMPTS) {
+            throw new IllegalArgumentException("attempts out of range: " + attempts);
+        }
+        if (difficulty < 0 || difficulty >= DIFFICULTIES) {
+            throw new IllegalArgumentException("difficulty out of range: " + difficulty);
+        }
+        Board board = boards[difficulty];
+        Score score = new Score(player, difficulty, attempts, Math.max(0, durationMillis), finishedAt);
+        Score current = board.best.get(player);
+        if (current != null && current.compareTo(score) <= 0) {
+            // Not a new best: no need to lock the player's entry
+            return false;
+        }
+        Score result = board.best.compute(player, (name, old) -> {
+            if (old != null && old.compareTo(score) <= 0) {
+                return old;
+            }
+            // Still under the entry's lock, so a racing submit for this player
+            // cannot undo these updates before they are made
+            if (old != null) {
+                count(board, old, -1);
+                if (board.top.remove(old)) {
+                    board.topSize.decrementAndGet();
+                }
+            }
+            count(board, score, 1);
+            addToTop(board, score);
+            return score;
+        });
+        if (result != score) {
+            return false;
+        }
+        changes.incrementAndGet();
+        return true;
+    }
+
+    private static void addToTop(Board board, Score score) {
+        if (board.topSize.get() >= TOP_CAPACITY) {
+            Score last = board.top.isEmpty() ? null : board.top.last();
+            if (last != null && score.compareTo(last) > 0) {
+                return;
+            }
+        }
+        if (board.top.add(score)) {
+            board.topSize.incrementAndGet();
+        }
+        while (board.topSize.get() > TOP_CAPACITY) {
+            if (board.top.pollLast() != null) {
+                board.topSize.decrementAndGet();
+            }
+        }
+    }
+
+    private static void count(Board board, Score score, int delta) {
+        for (int i = score.attempts; i <= MAX_ATTEMPTS; i += i & -i) {
+            board.byAttempts.addAndGet(i, delta);
+        }
+        AtomicIntegerArray times = board.byTime.get(score.attempts);
+        if (times == null) {
+            board.byTime.compareAndSet(score.attempts, null, new AtomicIntegerArray(TIME_SLOTS + 1));
+            times = board.byTime.get(score.attempts);
+        }
+        for (int i = slot(score.durationMillis); i <= TIME_SLOTS; i += i & -i) {
+            times.addAndGet(i, delta);
+        }
+    }
+
+    // 1-based time slot of a duration, in centiseconds
+    private static int slot(int durationMillis) {
+        return Math.min(durationMillis / 10, TIME_SLOTS - 1) + 1;
+    }
+
+    /** The best k scores at a difficulty, best first; k is at most TOP_CAPACITY. */
+    public List<Score> top(int difficulty, int k) {
+        List<Score> result = new ArrayList<>(Math.min(k, TOP_CAPACITY));
+        for (Score score : boards[difficulty].top) {
+            if (result.size() == k) {
+                break;
+            }
+            result.add(score);
+        }
+        return result;
+    }
+
+    /** The player's rank at a difficulty, 1 for the best, or 0 if they have no score. */
+    public long rank(String player, int difficulty) {
+        Score score = boards[difficulty].best.get(player);
+        return score == null ? 0 : rank(difficulty, score.attempts, score.durationMillis);
+    }
+
+    /** The rank a game with this many attempts and this time would have: 1 + the players ahead of it. */
+    public long rank(int difficulty, int attempts, int durationMillis) {
+        Board board = boards[difficulty];
+        long ahead = 0;
+        for (int i = Math.min(attempts - 1, MAX_ATTEMPTS); i > 0; i -= i & -i) {
+            ahead += board.byAttempts.get(i);
+        }
+        AtomicIntegerArray times = attempts <= MAX_ATTEMPTS ? board.byTime.get(attempts) : null;
+        if (times != null) {
+            for (int i = slot(Math.max(0, durationMillis)) - 1; i > 0; i -= i & -i) {
+                ahead += times.get(i);
+            }
+        }
+        return ahead + 1;
+    }
+
+    /** The player's best score at a difficulty, or null. */
+    public Score getBest(String player, int difficulty) {
+        return boards[difficulty].best.get(player);
+    }
+
+    /** Number of players with a score at a difficulty. */
+    public int getPlayers(int difficulty) {
+        return boards[difficulty].best.size();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Blocks until the file has been loaded, or failed to. */
+    public void awaitLoaded() throws InterruptedException {
+        loading.await();
+    }
+
+    /** Why the file could not be loaded, or null. The leaderboard then starts empty and does not overwrite it. */
+    public IOException getLoadError() {
+        return loadError;
+    }
+
+    /** Writes every player's best to the file, replacing it atomically. */
+    public synchronized void snapshot() throws IOException {
+        if (file == null || !loaded || loadError != null) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            for (Board board : boards) {
+                for (Map.Entry<String, Score> entry : board.best.entrySet()) {
+                    Score s = entry.getValue();
+                    out.writeByte(s.difficulty);
+                    out.writeByte(s.attempts);
+                    out.writeInt(s.durationMillis);
+                    out.writeLong(s.finishedAt);
+                    out.writeUTF(s.player);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotter == null || closed) {
+            return;
+        }
+        closed = true;
+        snapshotter.interrupt();
+        try {
+            snapshotter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    private void run() {
+        try {
+            load();
+        } catch (IOException e) {
+            loadError = e;
+        } catch (RuntimeException e) {
+            loadError = new IOException("Could not load " + file, e);
+        } finally {
+            // Whatever happened, awaitLoaded() must return
+            loaded = true;
+            loading.countDown();
+        }
+        while (!closed) {
+            try {
+                Thread.sleep(SNAPSHOT_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (changes.getAndSet(0) != 0) {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    // Try again with the next change
+                    changes.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        if (file.length() == 0) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a leaderboard: " + file);
+            }
+            while (true) {
+                int difficulty;
+                try {
+                    difficulty = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                int attempts = in.readByte();
+                int duration = in.readInt();
+                long finishedAt = in.readLong();
+                String player = in.readUTF();
+                if (difficulty < 0 || difficulty >= DIFFICULTIES || attempts < 1 || attempts > MAX_ATTEMPTS) {
+                    throw new IOException("Corrupt leaderboard record for " + player + " in " + file);
+                }
+                submit(player, difficulty, attempts, duration, finishedAt);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Load generator for GameServer.
+ *
+ * Opens many simulated players against the server, each playing binary search
+ * games back to back, and reports request throughput and latency percentiles.
+ * Players are spread over one selector thread per core.
+ *
+ * Usage: LoadGenerator [host] [port] [players] [seconds]
+ */
+public class LoadGenerator {
+    private static final byte[] NEW_GAME = "NEW MEDIUM\n".getBytes();
+    private static final int CONNECTS_PER_LOOP = 256;
+
+    private final InetSocketAddress address;
+    private final int players;
+    private final long endTime;
+
+    private static final class Player {
+        final ByteBuffer in = ByteBuffer.allocate(256);
+        final ByteBuffer out = ByteBuffer.allocate(64);
+        long sentAt;
+        long min;
+        long max;
+    }
+
+    private final class Worker extends Thread {
+        final int playerCount;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final GuessParser parser = new GuessParser();
+        long responses;
+        long games;
+        long failedConnects;
+
+        Worker(int index, int playerCount) {
+            super("load-" + index);
+            this.playerCount = playerCount;
+        }
+
+        @Override
+        public void run() {
+            try (Selector selector = Selector.open()) {
+                int opened = 0;
+                while (System.nanoTime() < endTime) {
+                    for (int i = 0; i < CONNECTS_PER_LOOP && opened < playerCount; i++, opened++) {
+                        try {
+                            SocketChannel channel = SocketChannel.open();
+                            channel.configureBlocking(false);
+                            channel.socket().setTcpNoDelay(true);
+                            channel.connect(address);
+                            channel.register(selector, SelectionKey.OP_CONNECT, new Player());
+                        } catch (IOException e) {
+                            failedConnects++;
+                        }
+                    }
+                    selector.select(10);
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            handle(key);
+                        } catch (IOException e) {
+                            key.cancel();
+                            key.channel().close();
+                        }
+                    }
+                }
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void handle(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Player player = (Player) key.attachment();
+            if (key.isConnectable()) {
+                try {
+                    channel.finishConnect();
+                } catch (IOException e) {
+                    failedConnects++;
+                    throw e;
+                }
+                key.interestOps(SelectionKey.OP_READ);
+                player.out.put(NEW_GAME);
+                send(channel, player);
+                return;
+            }
+
+            if (channel.read(player.in) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+            ByteBuffer in = player.in;
+            in.flip();
+            int lineStart = 0;
+            for (int i = 0; i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    latency.record(System.nanoTime() - player.sentAt);
+                    responses++;
+                    onResponse(player, in, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            in.position(lineStart);
+            in.compact();
+            if (player.out.position() > 0) {
+                send(channel, player);
+            }
+        }
+
+        private void onResponse(Player player, ByteBuffer in, int start, int end) {
+            int space = start;
+            while (space < end && in.get(space) != ' ') {
+                space++;
+            }
+            if (GameServer.matches(in, start, space, "RANGE")) {
+                int a = GameServer.nextSpace(in, space + 1, end);
+                player.min = parse(in, space + 1, a);
+                int b = GameServer.nextSpace(in, a + 1, end);
+                player.max = parse(in, a + 1, b);
+            } else if (GameServer.matches(in, start, space, "LOW") || GameServer.matches(in, start, space, "HIGH")) {
+                int a = GameServer.nextSpace(in, space + 1, end);
+                int b = GameServer.nextSpace(in, a + 1, end);
+                player.min = parse(in, a + 1, b);
+                int c = GameServer.nextSpace(in, b + 1, end);
+                player.max = parse(in, b + 1, c);
+            } else {
+                // CORRECT, LOST or anything unexpected: start over
+                games++;
+                player.out.put(NEW_GAME);
+                return;
+            }
+            GameServer.putAscii(player.out, "GUESS ");
+            GameServer.putLong(player.out, GameEngine.midpoint(player.min, player.max));
+            player.out.put((byte) '\n');
+        }
+
+        private long parse(ByteBuffer in, int start, int end) {
+            return parser.parse(in, start, end) ? parser.value() : 0;
+        }
+
+        private void send(SocketChannel channel, Player player) throws IOException {
+            player.out.flip();
+            player.sentAt = System.nanoTime();
+            channel.write(player.out);
+            player.out.compact();
+        }
+    }
+
+    public LoadGenerator(InetSocketAddress address, int players, long durationNanos) {
+        this.address = address;
+        this.players = players;
+        this.endTime = System.nanoTime() + durationNanos;
+    }
+
+    public void run(int threads) throws InterruptedException {
+        long start = System.nanoTime();
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i, players / threads + (i < players % threads ? 1 : 0));
+            workers[i].start();
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long responses = 0;
+        long games = 0;
+        long failed = 0;
+        for (Worker worker : workers) {
+            worker.join();
+            latency.add(worker.latency);
+            responses += worker.responses;
+            games += worker.games;
+            failed += worker.failedConnects;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("players:     %d (%d failed to connect)%n", players, failed);
+        System.out.printf("duration:    %.1f s%n", seconds);
+        System.out.printf("requests:    %d (%.0f/s)%n", responses, responses / seconds);
+        System.out.printf("games:       %d (%.0f/s)%n", games, games / seconds);
+        System.out.printf("latency p50: %.3f ms%n", latency.percentile(50) / 1e6);
+        System.out.printf("latency p99: %.3f ms%n", latency.percentile(99) / 1e6);
+        System.out.printf("latency p999: %.3f ms%n", latency.percentile(99.9) / 1e6);
+        System.out.printf("latency max: %.3f ms%n", latency.getMax() / 1e6);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        new LoadGenerator(new InetSocketAddress(host, port), players, seconds * 1_000_000_000L).run(threads);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * A seedable SplitMix64 random stream, with no shared state.
+ *
+ * Unlike java.util.Random there is no atomic seed, so streams never contend:
+ * give each thread, engine or animation its own stream and nothing is shared.
+ * Every stream is derived from one master seed, taken from -Dguessinggame.seed
+ * or picked at startup, so a run can be reproduced exactly by passing the same
+ * seed again. A stream is not thread-safe.
+ */
+public final class RandomSource {
+    /** Added to the state for every number; streams kept as a bare long advance by it too. */
+    public static final long GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long MASTER_SEED = initialSeed();
+
+    private long state;
+
+    public RandomSource(long seed) {
+        state = seed;
+    }
+
+    /** A stream for the named part of the program, derived from the master seed. */
+    public static RandomSource named(String name) {
+        return new RandomSource(seedFor(name));
+    }
+
+    /** The master seed of this run; pass it as -Dguessinggame.seed to repeat the run. */
+    public static long masterSeed() {
+        return MASTER_SEED;
+    }
+
+    /** The seed of the named stream, so the same name gives the same numbers for the same master seed. */
+    public static long seedFor(String name) {
+        return seedFor(MASTER_SEED, name.hashCode());
+    }
+
+    /** The seed of sub-stream index of seed: different indexes give independent streams. */
+    public static long seedFor(long seed, long index) {
+        return mix64(seed + mix64(index + GAMMA));
+    }
+
+    public void setSeed(long seed) {
+        state = seed;
+    }
+
+    /** A new stream, independent of this one from here on. */
+    public RandomSource split() {
+        return new RandomSource(mix64(nextLong() ^ 0x5DEECE66DL));
+    }
+
+    public long nextLong() {
+        return mix64(state += GAMMA);
+    }
+
+    /** Uniform in [0, bound); bound must be positive. */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) (nextLong() >>> 33) & m;
+        }
+        // Reject the top partial block so every value is equally likely
+        int u;
+        int r;
+        do {
+            u = (int) (nextLong() >>> 33);
+            r = u % bound;
+        } while (u - r + m < 0);
+        return r;
+    }
+
+    /** Uniform in [0, bound), with bound read as unsigned and 0 meaning 2^64. */
+    public long nextLong(long bound) {
+        if (bound > 0 && bound <= Integer.MAX_VALUE) {
+            return nextInt((int) bound);
+        }
+        if (bound == 0) {
+            return nextLong();
+        }
+        long r;
+        if (bound > 0) {
+            long u;
+            do {
+                u = nextLong() >>> 1;
+                r = u % bound;
+            } while (u - r + (bound - 1) < 0);
+        } else {
+            do {
+                r = nextLong();
+            } while (Long.compareUnsigned(r, bound) >= 0);
+        }
+        return r;
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /** Uniform in [0, 1). */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /** Uniform in [0, 1). */
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    /** The SplitMix64 finalizer: a bijection that scrambles every bit of z. */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long initialSeed() {
+        String property = System.getProperty("guessinggame.seed");
+        if (property != null) {
+            return Long.decode(property.trim());
+        }
+        return mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime());
+    }
+}
@@ -0,0 +1,181 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+/**
+ * Picks how much of the background animation to draw from how busy it keeps the EDT.
+ *
+ * Each frame reports the time spent animating and painting it and how late its
+ * timer fired, which is time the EDT spent on something else. Over windows of
+ * WINDOW_MS the governor compares that busy time to the time that passed:
+ *
+ * - above DOWNGRADE_LOAD it drops one tier at once, so typing and clicking keep
+ *   the EDT they need on weak hardware instead of queueing behind frames;
+ * - below UPGRADE_LOAD for enough windows in a row it tries one tier up.
+ *
+ * The gap between the two thresholds and the wait before an upgrade keep the
+ * tier from flapping. An upgrade that has to be undone soon after doubles the
+ * wait before the next try, up to MAX_CALM_WINDOWS, so hardware that sits on
+ * the edge of a tier settles on the lower one.
+ *
+ * A pinned tier is kept no matter what, e.g. -Dguessinggame.quality=reduced.
+ * Runs on the EDT; the tier and counters can be read from any thread.
+ */
+public class RenderQuality {
+    public enum Tier {
+        /** Every bubble and floating number, antialiased, at the full frame rate. */
+        FULL(1, 1, FrameScheduler.FRAME_PERIOD_MS),
+        /** Half the bubbles and numbers, no antialiasing, at half the frame rate. */
+        REDUCED(2, 2, 2 * FrameScheduler.FRAME_PERIOD_MS),
+        /** A still background, updated only often enough to notice that it could do more. */
+        MINIMAL(0, 0, FrameScheduler.IDLE_PERIOD_MS);
+
+        private final int bubbleDivisor;
+        private final int numberDivisor;
+        private final int framePeriodMillis;
+
+        Tier(int bubbleDivisor, int numberDivisor, int framePeriodMillis) {
+            this.bubbleDivisor = bubbleDivisor;
+            this.numberDivisor = numberDivisor;
+            this.framePeriodMillis = framePeriodMillis;
+        }
+
+        /** How many of this many bubbles to draw. */
+        public int bubbles(int count) {
+            return bubbleDivisor == 0 ? 0 : count / bubbleDivisor;
+        }
+
+        /** How many of this many floating numbers to draw. */
+        public int numbers(int count) {
+            return numberDivisor == 0 ? 0 : count / numberDivisor;
+        }
+
+        public int getFramePeriodMillis() {
+            return framePeriodMillis;
+        }
+    }
+
+    public interface Listener {
+        void tierChanged(Tier tier);
+    }
+
+    static final long WINDOW_MS = 500;
+    static final double DOWNGRADE_LOAD = 0.5;
+    static final double UPGRADE_LOAD = 0.1;
+    static final int MIN_CALM_WINDOWS = 4;
+    static final int MAX_CALM_WINDOWS = 128;
+    // An upgrade undone within this many windows counts as a failed try
+    private static final int FAILED_UPGRADE_WINDOWS = 8;
+
+    private final Listener listener;
+    private volatile Tier tier = Tier.FULL;
+    private volatile Tier pinned;
+
+    private long windowStart;
+    private long windowBusy;
+    private int calmWindows;
+    private int calmWindowsNeeded = MIN_CALM_WINDOWS;
+    // Windows since the last upgrade, or -1 if the last change was not one
+    private int sinceUpgrade = -1;
+    private volatile long changes;
+
+    public RenderQuality(Listener listener) {
+        this.listener = listener;
+        String property = System.getProperty("guessinggame.quality", "auto");
+        if (!property.equalsIgnoreCase("auto")) {
+            try {
+                setPinned(Tier.valueOf(property.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown render quality " + property + "; use full, reduced, minimal or auto");
+            }
+        }
+    }
+
+    public Tier getTier() {
+        return tier;
+    }
+
+    /** The pinned tier, or null while the tier follows the load. */
+    public Tier getPinned() {
+        return pinned;
+    }
+
+    /** Keeps the given tier for good, or with null goes back to following the load. */
+    public void setPinned(Tier pinned) {
+        this.pinned = pinned;
+        calmWindowsNeeded = MIN_CALM_WINDOWS;
+        sinceUpgrade = -1;
+        resetWindow();
+        change(pinned != null ? pinned : Tier.FULL);
+    }
+
+    /** Number of tier changes so far. */
+    public long getChanges() {
+        return changes;
+    }
+
+    /**
+     * Records one frame: the nanos spent on it and how late it started, both
+     * measured at now. Changes the tier at the end of a window if the load asks
+     * for it.
+     */
+    public void frame(long now, long workNanos, long lateNanos) {
+        if (pinned != null) {
+            return;
+        }
+        if (windowStart == 0) {
+            windowStart = now - workNanos - lateNanos;
+        }
+        windowBusy += workNanos + lateNanos;
+        long elapsed = now - windowStart;
+        if (elapsed < WINDOW_MS * 1_000_000L) {
+            return;
+        }
+        double load = (double) windowBusy / elapsed;
+        resetWindow();
+        if (sinceUpgrade >= 0) {
+            sinceUpgrade++;
+        }
+
+        if (load > DOWNGRADE_LOAD && tier != Tier.MINIMAL) {
+            if (sinceUpgrade >= 0 && sinceUpgrade <= FAILED_UPGRADE_WINDOWS) {
+                calmWindowsNeeded = Math.min(2 * calmWindowsNeeded, MAX_CALM_WINDOWS);
+            }
+            sinceUpgrade = -1;
+            calmWindows = 0;
+            change(Tier.values()[tier.ordinal() + 1]);
+        } else if (load < UPGRADE_LOAD && tier != Tier.FULL) {
+            if (++calmWindows >= calmWindowsNeeded) {
+                calmWindows = 0;
+                sinceUpgrade = 0;
+                change(Tier.values()[tier.ordinal() - 1]);
+            }
+        } else {
+            calmWindows = 0;
+        }
+    }
+
+    private void resetWindow() {
+        windowStart = 0;
+        windowBusy = 0;
+    }
+
+    private void change(Tier next) {
+        if (next == tier) {
+            return;
+        }
+        tier = next;
+        changes++;
+        // Frames drawn in the old tier say nothing about the new one
+        resetWindow();
+        listener.tierChanged(next);
+    }
+
+    /** Sets the hints for painting live, every-frame content in the current tier. */
+    public void applyHints(Graphics2D g2d) {
+        boolean full = tier == Tier.FULL;
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                full ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING,
+                full ? RenderingHints.VALUE_RENDER_QUALITY : RenderingHints.VALUE_RENDER_SPEED);
+    }
+}
@@ -0,0 +1,301 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays the game rules with bots, to check how the attempt limits and hints are tuned.
+ *
+ * Every game goes through GameEngine, the same rules the UI uses, with the hint
+ * shown by the "Get Hint" button available to the bot before each guess. Games are
+ * split over a fork/join pool; every task has its own engine and random stream
+ * and counts into a local histogram, so the workers share nothing until they merge.
+ * The streams are split from -Dguessinggame.seed by task, so a run with the same
+ * seed plays exactly the same games whatever the number of threads.
+ *
+ * For each strategy and difficulty it prints the win rate, attempt percentiles and
+ * the full distribution of attempts, plus games per second. With hints, a level
+ * must take fewer attempts on average than the harder ones, or the run fails.
+ *
+ * Usage: Simulator [games per strategy and difficulty] [strategy...]
+ * The range is 1 to 100 unless set with -Dguessinggame.min and -Dguessinggame.max.
+ */
+public class Simulator {
+    /** A bot. Implementations are stateless so one instance can play on every thread. */
+    public interface Strategy {
+        /** The number to enter next, given the game as the UI shows it at this difficulty. */
+        long nextGuess(GameEngine engine, int session, int difficulty, RandomSource rand);
+    }
+
+    /** Always guesses the middle of the remaining range. */
+    public static final Strategy BINARY = (engine, session, difficulty, rand) ->
+            GameEngine.midpoint(engine.getMinRange(session), engine.getMaxRange(session));
+
+    /** Guesses anywhere in the remaining range. */
+    public static final Strategy RANDOM = (engine, session, difficulty, rand) -> {
+        long min = engine.getMinRange(session);
+        // An unsigned bound of 0 is the full 2^64 range
+        return min + rand.nextLong(engine.getMaxRange(session) - min + 1);
+    };
+
+    /**
+     * Asks for a hint before every guess, then bisects the part of the range the
+     * hints of the game allow, stepping to the nearest number in every class they
+     * named.
+     */
+    public static final Strategy HINTED = (engine, session, difficulty, rand) -> {
+        engine.hint(session, difficulty);
+        // What the range and the halves and quarters of this game leave, this hint included
+        long lo = engine.getHintedMin(session);
+        long hi = engine.getHintedMax(session);
+        long guess = GameEngine.midpoint(lo, hi);
+        // Remainder hints: step outwards to the nearest number in the classes, which repeat every 12
+        for (int step = 0; step < 12; step++) {
+            long up = guess + step;
+            if (Long.compareUnsigned(hi - guess, step) >= 0 && engine.fitsHints(session, up)) {
+                return up;
+            }
+            long down = guess - step;
+            if (Long.compareUnsigned(guess - lo, step) >= 0 && engine.fitsHints(session, down)) {
+                return down;
+            }
+        }
+        return guess;
+    };
+
+    /**
+     * Plays as badly as the rules allow: every other input is out of range, which
+     * must not cost an attempt, and the rest probe the edges of the range.
+     */
+    public static final Strategy ADVERSARIAL = (engine, session, difficulty, rand) -> {
+        long min = engine.getMinRange(session);
+        long max = engine.getMaxRange(session);
+        if (rand.nextBoolean() && min > Long.MIN_VALUE && max < Long.MAX_VALUE) {
+            return rand.nextBoolean() ? min - 1 : max + 1;
+        }
+        return engine.getAttempts(session) % 2 == 0 ? min : max;
+    };
+
+    private static final String[] STRATEGY_NAMES = {"binary", "random", "hinted", "adversarial"};
+    private static final Strategy[] STRATEGIES = {BINARY, RANDOM, HINTED, ADVERSARIAL};
+    // The strategy whose levels are checked against each other
+    private static final int HINTED_INDEX = 2;
+    private static final String[] DIFFICULTY_NAMES = {"Easy", "Medium", "Hard"};
+    private static final long MIN = Long.getLong("guessinggame.min", GameEngine.DEFAULT_MIN);
+    private static final long MAX = Long.getLong("guessinggame.max", GameEngine.DEFAULT_MAX);
+    private static final long GAMES_PER_TASK = 1 << 16;
+    // A guess loop that runs this long has broken the rules
+    private static final int MAX_INPUTS_PER_GAME = 10_000;
+
+    /** Attempts of won games, plus losses and rule violations. */
+    public static final class Result {
+        final long[] wins;
+        long losses;
+        long violations;
+
+        Result(int maxAttempts) {
+            wins = new long[maxAttempts + 1];
+        }
+
+        void add(Result other) {
+            for (int i = 0; i < wins.length; i++) {
+                wins[i] += other.wins[i];
+            }
+            losses += other.losses;
+            violations += other.violations;
+        }
+
+        public long getGames() {
+            return getWins() + losses;
+        }
+
+        public long getWins() {
+            long total = 0;
+            for (long n : wins) {
+                total += n;
+            }
+            return total;
+        }
+
+        public long getLosses() {
+            return losses;
+        }
+
+        /** Games in which an out-of-range guess cost an attempt or a game never ended. */
+        public long getViolations() {
+            return violations;
+        }
+
+        /** Number of wins that took exactly this many attempts. */
+        public long getWins(int attempts) {
+            return wins[attempts];
+        }
+
+        /** Attempts needed by the given percentage (0-100) of all games; losses count as never. */
+        public int percentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * getGames()));
+            long seen = 0;
+            for (int i = 0; i < wins.length; i++) {
+                seen += wins[i];
+                if (seen >= rank) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public double getMeanAttempts() {
+            long sum = 0;
+            for (int i = 0; i < wins.length; i++) {
+                sum += wins[i] * i;
+            }
+            long won = getWins();
+            return won == 0 ? 0 : (double) sum / won;
+        }
+    }
+
+    private static final class Task extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final Strategy strategy;
+        private final int difficulty;
+        private final int maxAttempts;
+        private final long first;
+        private final long games;
+        private final long seed;
+
+        Task(Strategy strategy, int difficulty, long first, long games, long seed) {
+            this.strategy = strategy;
+            this.difficulty = difficulty;
+            this.maxAttempts = GameEngine.maxAttempts(difficulty, MIN, MAX);
+            this.first = first;
+            this.games = games;
+            this.seed = seed;
+        }
+
+        @Override
+        protected Result compute() {
+            if (games > GAMES_PER_TASK) {
+                long half = games / 2;
+                Task left = new Task(strategy, difficulty, first, half, seed);
+                left.fork();
+                Result result = new Task(strategy, difficulty, first + half, games - half, seed).compute();
+                result.add(left.join());
+                return result;
+            }
+            return play();
+        }
+
+        private Result play() {
+            RandomSource rand = new RandomSource(RandomSource.seedFor(seed, first));
+            GameEngine engine = new GameEngine(1, rand.nextLong());
+            int session = engine.allocate();
+            Result result = new Result(maxAttempts);
+            for (long g = 0; g < games; g++) {
+                engine.newGame(session, difficulty, MIN, MAX);
+                int inputs = 0;
+                while (true) {
+                    int before = engine.getAttempts(session);
+                    int outcome = engine.guess(session, strategy.nextGuess(engine, session, difficulty, rand), maxAttempts);
+                    if (outcome == GameEngine.CORRECT) {
+                        result.wins[engine.getAttempts(session)]++;
+                        break;
+                    }
+                    if (outcome == GameEngine.LOST) {
+                        result.losses++;
+                        break;
+                    }
+                    if ((outcome == GameEngine.OUT_OF_RANGE && engine.getAttempts(session) != before)
+                            || ++inputs == MAX_INPUTS_PER_GAME) {
+                        result.violations++;
+                        result.losses++;
+                        break;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /** Plays the given number of games with one strategy at one difficulty. */
+    public static Result simulate(ForkJoinPool pool, Strategy strategy, int difficulty, long games, long seed) {
+        return pool.invoke(new Task(strategy, difficulty, 0, games, seed));
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0].replace("_", "")) : 10_000_000L;
+        boolean[] selected = new boolean[STRATEGIES.length];
+        for (int i = 1; i < args.length; i++) {
+            boolean found = false;
+            for (int s = 0; s < STRATEGIES.length; s++) {
+                if (STRATEGY_NAMES[s].equalsIgnoreCase(args[i])) {
+                    selected[s] = true;
+                    found = true;
+                }
+            }
+            if (!found) {
+                System.err.println("Unknown strategy: " + args[i] + " (binary, random, hinted, adversarial)");
+                System.exit(2);
+            }
+        }
+        if (args.length <= 1) {
+            java.util.Arrays.fill(selected, true);
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long seed = RandomSource.masterSeed();
+        System.out.printf("%d games per strategy and difficulty, range %d-%d, %d threads, seed %d%n%n",
+                games, MIN, MAX, pool.getParallelism(), seed);
+        System.out.printf("%-12s %-7s %8s %6s %4s %4s %4s %4s %12s%n",
+                "strategy", "level", "win %", "mean", "p50", "p90", "p99", "max", "games/s");
+
+        long totalGames = 0;
+        long totalStart = System.nanoTime();
+        StringBuilder distributions = new StringBuilder();
+        double[] hintedMeans = new double[GameEngine.HARD + 1];
+        for (int s = 0; s < STRATEGIES.length; s++) {
+            if (!selected[s]) {
+                continue;
+            }
+            for (int d = GameEngine.EASY; d <= GameEngine.HARD; d++) {
+                long start = System.nanoTime();
+                Result r = simulate(pool, STRATEGIES[s], d, games, seed);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                totalGames += r.getGames();
+                if (s == HINTED_INDEX) {
+                    hintedMeans[d] = r.getMeanAttempts();
+                }
+
+                int max = -1;
+                for (int a = 0; a < r.wins.length; a++) {
+                    if (r.wins[a] != 0) {
+                        max = a;
+                    }
+                }
+                System.out.printf("%-12s %-7s %8.3f %6.2f %4s %4s %4s %4s %12.0f%s%n",
+                        STRATEGY_NAMES[s], DIFFICULTY_NAMES[d], 100.0 * r.getWins() / r.getGames(),
+                        r.getMeanAttempts(), attempts(r.percentile(50)), attempts(r.percentile(90)),
+                        attempts(r.percentile(99)), attempts(max), r.getGames() / seconds,
+                        r.getViolations() > 0 ? "  RULE VIOLATIONS: " + r.getViolations() : "");
+
+                distributions.append(String.format("%-12s %-7s", STRATEGY_NAMES[s], DIFFICULTY_NAMES[d]));
+                for (int a = 1; a < r.wins.length; a++) {
+                    distributions.append(' ').append(a).append(':').append(r.wins[a]);
+                }
+                distributions.append(" lost:").append(r.getLosses()).append('\n');
+            }
+        }
+        double seconds = (System.nanoTime() - totalStart) / 1e9;
+        System.out.printf("%nWins by number of attempts:%n%s", distributions);
+        System.out.printf("%nTotal: %d games in %.1f s (%.0f games/s)%n", totalGames, seconds, totalGames / seconds);
+        if (selected[HINTED_INDEX] && !(hintedMeans[GameEngine.EASY] < hintedMeans[GameEngine.MEDIUM]
+                && hintedMeans[GameEngine.MEDIUM] < hintedMeans[GameEngine.HARD])) {
+            System.out.printf("FAILED: hinted mean attempts %.2f, %.2f, %.2f should fall from Hard to Easy%n",
+                    hintedMeans[GameEngine.EASY], hintedMeans[GameEngine.MEDIUM], hintedMeans[GameEngine.HARD]);
+            System.exit(1);
+        }
+    }
+
+    // Percentiles past the last win fall on losses
+    private static String attempts(int value) {
+        return value < 0 ? "lost" : Integer.toString(value);
+    }
+}
@@ -0,0 +1,135 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import javax.swing.UIManager;
+
+/**
+ * Pre-rendered images for the custom-painted widgets.
+ *
+ * Shapes that are uniform in the middle, like rounded rectangles, are kept as
+ * nine-patches: a small image that is stretched to any size with nine blits.
+ * Anything else is cached at its full size by the widget itself, using
+ * createImage() and the version number to know when to rebuild.
+ *
+ * Images are rendered at the device scale of the Graphics they are drawn to, so
+ * they stay sharp on Hi-DPI screens. A look and feel change invalidates them all.
+ */
+public final class WidgetSkins {
+    /** Paints a shape into an image of the given size in user space. */
+    public interface Painter {
+        void paint(Graphics2D g2d, int width, int height);
+    }
+
+    private static int version;
+
+    static {
+        UIManager.addPropertyChangeListener(e -> {
+            if ("lookAndFeel".equals(e.getPropertyName())) {
+                invalidateAll();
+            }
+        });
+    }
+
+    private WidgetSkins() {
+    }
+
+    /** Makes every cached skin render again on its next paint. */
+    public static void invalidateAll() {
+        version++;
+    }
+
+    public static int version() {
+        return version;
+    }
+
+    /** The device scale of the graphics, 1 on a normal screen and 2 on most Hi-DPI ones. */
+    public static double scaleOf(Graphics2D g2d) {
+        return Math.max(1.0, g2d.getDeviceConfiguration().getDefaultTransform().getScaleX());
+    }
+
+    /**
+     * Draws image with its top left corner at (left, top), but only the part inside
+     * the rectangle (x, y, w, h). Unlike setClip, this allocates nothing.
+     */
+    public static void drawClipped(Graphics2D g2d, BufferedImage image, int left, int top, int x, int y, int w, int h) {
+        int x1 = Math.max(left, x);
+        int y1 = Math.max(top, y);
+        int x2 = Math.min(left + image.getWidth(), x + w);
+        int y2 = Math.min(top + image.getHeight(), y + h);
+        if (x1 < x2 && y1 < y2) {
+            g2d.drawImage(image, x1, y1, x2, y2, x1 - left, y1 - top, x2 - left, y2 - top, null);
+        }
+    }
+
+    /** Renders the painter into a translucent image at the given scale. */
+    public static BufferedImage createImage(Painter painter, int width, int height, double scale) {
+        BufferedImage image = new BufferedImage(
+                Math.max(1, (int) Math.ceil(width * scale)), Math.max(1, (int) Math.ceil(height * scale)),
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = image.createGraphics();
+        g2d.scale(scale, scale);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        painter.paint(g2d, width, height);
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * A shape whose corners fit within inset pixels of each edge and whose middle
+     * is uniform, drawn at any size from one small image.
+     */
+    public static final class NinePatch {
+        private final Painter painter;
+        private final int inset;
+        private BufferedImage image;
+        private double imageScale;
+        private int imageVersion = -1;
+
+        public NinePatch(int inset, Painter painter) {
+            this.inset = inset;
+            this.painter = painter;
+        }
+
+        public void draw(Graphics2D g2d, int x, int y, int width, int height) {
+            if (width < 2 * inset + 1 || height < 2 * inset + 1) {
+                // Too small to stretch: the corners would overlap
+                Graphics2D g = (Graphics2D) g2d.create(x, y, width, height);
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                painter.paint(g, width, height);
+                g.dispose();
+                return;
+            }
+
+            double scale = scaleOf(g2d);
+            if (image == null || imageScale != scale || imageVersion != version) {
+                int size = 2 * inset + 1;
+                image = createImage(painter, size, size, scale);
+                imageScale = scale;
+                imageVersion = version;
+            }
+
+            int s1 = (int) Math.round(inset * scale);
+            int s2 = image.getWidth() - s1;
+            int s3 = image.getWidth();
+            int dx1 = x + inset;
+            int dx2 = x + width - inset;
+            int dx3 = x + width;
+            int dy1 = y + inset;
+            int dy2 = y + height - inset;
+            int dy3 = y + height;
+
+            // Corners
+            g2d.drawImage(image, x, y, dx1, dy1, 0, 0, s1, s1, null);
+            g2d.drawImage(image, dx2, y, dx3, dy1, s2, 0, s3, s1, null);
+            g2d.drawImage(image, x, dy2, dx1, dy3, 0, s2, s1, s3, null);
+            g2d.drawImage(image, dx2, dy2, dx3, dy3, s2, s2, s3, s3, null);
+            // Edges
+            g2d.drawImage(image, dx1, y, dx2, dy1, s1, 0, s2, s1, null);
+            g2d.drawImage(image, dx1, dy2, dx2, dy3, s1, s2, s2, s3, null);
+            g2d.drawImage(image, x, dy1, dx1, dy2, 0, s1, s1, s2, null);
+            g2d.drawImage(image, dx2, dy1, dx3, dy2, s2, s1, s3, s2, null);
+            // Middle
+            g2d.drawImage(image, dx1, dy1, dx2, dy2, s1, s1, s2, s2, null);
+        }
+    }
+}
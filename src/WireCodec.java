@@ -0,0 +1,239 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Binary frames for the game protocol, encoded and decoded in place on ByteBuffers.
+ *
+ * A frame is a type byte, a payload length byte and a payload of fixed size for
+ * the type, in network byte order (the buffers must be BIG_ENDIAN, the default):
+ *
+ *   NEW_GAME  difficulty:u8 min:i64 max:i64        client: start a game
+ *   GUESS     guess:i64                            client
+ *   HINT      type:u8 value:u8                     client sends zeros; server answers
+ *   RESULT    outcome:u8 attempts:u8 secret:i64    server; the secret is 0 until the game is over
+ *   RANGE     min:i64 max:i64 attempts:u8 maxAttempts:u8
+ *                                                  server, after a new game and every guess
+ *                                                  that narrowed or missed the range
+ *   QUIT      (empty)                              client
+ *   ERROR     code:u8                              server
+ *
+ * Outcomes, hint types and difficulties are GameEngine's constants. The put
+ * methods write a whole frame or, if it does not fit, nothing and return false.
+ * A Decoder reads frames where they lie in the buffer; like GuessParser it
+ * reports bad input by return value, so nothing on either path allocates or
+ * throws.
+ */
+public final class WireCodec {
+    public static final int NEW_GAME = 1;
+    public static final int GUESS = 2;
+    public static final int HINT = 3;
+    public static final int RESULT = 4;
+    public static final int RANGE = 5;
+    public static final int QUIT = 6;
+    public static final int ERROR = 7;
+
+    /** Decoder.next: the buffer does not hold a whole frame yet. */
+    public static final int NEED_MORE = 0;
+    /** Decoder.next: not a frame; the stream cannot be followed any further. */
+    public static final int MALFORMED = -1;
+    /** Decoder.next: a well-formed frame with values out of range; it was skipped. */
+    public static final int INVALID = -2;
+
+    /** ERROR codes. */
+    public static final int ERROR_MALFORMED = 1;
+    public static final int ERROR_INVALID = 2;
+
+    public static final int HEADER = 2;
+    /** The largest frame, header included. */
+    public static final int MAX_FRAME = HEADER + 18;
+
+    private static final int[] PAYLOAD = {-1, 17, 8, 2, 10, 18, 0, 1};
+
+    private WireCodec() {
+    }
+
+    /** Size of a frame of this type, header included. */
+    public static int frameSize(int type) {
+        return HEADER + PAYLOAD[type];
+    }
+
+    public static boolean putNewGame(ByteBuffer buf, int difficulty, long min, long max) {
+        if (!header(buf, NEW_GAME)) {
+            return false;
+        }
+        buf.put((byte) difficulty);
+        buf.putLong(min);
+        buf.putLong(max);
+        return true;
+    }
+
+    public static boolean putGuess(ByteBuffer buf, long guess) {
+        if (!header(buf, GUESS)) {
+            return false;
+        }
+        buf.putLong(guess);
+        return true;
+    }
+
+    /** A hint request from the client has type and value 0; the server answers with a packed code's parts. */
+    public static boolean putHint(ByteBuffer buf, int type, int value) {
+        if (!header(buf, HINT)) {
+            return false;
+        }
+        buf.put((byte) type);
+        buf.put((byte) value);
+        return true;
+    }
+
+    public static boolean putResult(ByteBuffer buf, int outcome, int attempts, long secret) {
+        if (!header(buf, RESULT)) {
+            return false;
+        }
+        buf.put((byte) outcome);
+        buf.put((byte) attempts);
+        buf.putLong(secret);
+        return true;
+    }
+
+    public static boolean putRange(ByteBuffer buf, long min, long max, int attempts, int maxAttempts) {
+        if (!header(buf, RANGE)) {
+            return false;
+        }
+        buf.putLong(min);
+        buf.putLong(max);
+        buf.put((byte) attempts);
+        buf.put((byte) maxAttempts);
+        return true;
+    }
+
+    public static boolean putQuit(ByteBuffer buf) {
+        return header(buf, QUIT);
+    }
+
+    public static boolean putError(ByteBuffer buf, int code) {
+        if (!header(buf, ERROR)) {
+            return false;
+        }
+        buf.put((byte) code);
+        return true;
+    }
+
+    private static boolean header(ByteBuffer buf, int type) {
+        if (buf.remaining() < HEADER + PAYLOAD[type]) {
+            return false;
+        }
+        buf.put((byte) type);
+        buf.put((byte) PAYLOAD[type]);
+        return true;
+    }
+
+    /**
+     * Reads frames in place. next() moves the buffer past one frame and returns its
+     * type; the getters then read that frame's fields straight from the buffer, so
+     * they are valid until the buffer is compacted or refilled. Keep one per thread.
+     */
+    public static final class Decoder {
+        private ByteBuffer buf;
+        private int type;
+        private int payload;
+
+        /**
+         * Decodes the frame at the buffer's position: its type, or NEED_MORE
+         * (position unchanged), MALFORMED (position unchanged) or INVALID (frame
+         * skipped).
+         */
+        public int next(ByteBuffer buf) {
+            int start = buf.position();
+            if (buf.remaining() < HEADER) {
+                return NEED_MORE;
+            }
+            int t = buf.get(start) & 0xff;
+            int length = buf.get(start + 1) & 0xff;
+            if (t < NEW_GAME || t > ERROR || length != PAYLOAD[t]) {
+                return MALFORMED;
+            }
+            if (buf.remaining() < HEADER + length) {
+                return NEED_MORE;
+            }
+            this.buf = buf;
+            type = t;
+            payload = start + HEADER;
+            buf.position(payload + length);
+            return valid() ? t : INVALID;
+        }
+
+        private boolean valid() {
+            switch (type) {
+                case NEW_GAME:
+                    return getDifficulty() <= GameEngine.HARD && getMin() <= getMax();
+                case HINT:
+                    return getHintType() <= GameEngine.HINT_DIGIT_SUM_3;
+                case RESULT:
+                    return getOutcome() <= GameEngine.LOST;
+                case RANGE:
+                    return getMin() <= getMax();
+                default:
+                    return true;
+            }
+        }
+
+        /** Type of the last frame decoded. */
+        public int getType() {
+            return type;
+        }
+
+        /** NEW_GAME */
+        public int getDifficulty() {
+            return buf.get(payload) & 0xff;
+        }
+
+        /** NEW_GAME or RANGE */
+        public long getMin() {
+            return buf.getLong(type == NEW_GAME ? payload + 1 : payload);
+        }
+
+        /** NEW_GAME or RANGE */
+        public long getMax() {
+            return buf.getLong(type == NEW_GAME ? payload + 9 : payload + 8);
+        }
+
+        /** GUESS */
+        public long getGuess() {
+            return buf.getLong(payload);
+        }
+
+        /** HINT */
+        public int getHintType() {
+            return buf.get(payload) & 0xff;
+        }
+
+        /** HINT */
+        public int getHintValue() {
+            return buf.get(payload + 1) & 0xff;
+        }
+
+        /** RESULT */
+        public int getOutcome() {
+            return buf.get(payload) & 0xff;
+        }
+
+        /** RESULT or RANGE */
+        public int getAttempts() {
+            return buf.get(type == RESULT ? payload + 1 : payload + 16) & 0xff;
+        }
+
+        /** RESULT */
+        public long getSecret() {
+            return buf.getLong(payload + 2);
+        }
+
+        /** RANGE */
+        public int getMaxAttempts() {
+            return buf.get(payload + 17) & 0xff;
+        }
+
+        /** ERROR */
+        public int getErrorCode() {
+            return buf.get(payload) & 0xff;
+        }
+    }
+}